@@ -0,0 +1,114 @@
+package com.github.jaceg18.chess.bench;
+
+import com.github.jaceg18.chess.game.Bitboard;
+import com.github.jaceg18.chess.game.moves.Move;
+import com.github.jaceg18.chess.game.moves.MoveBuffer;
+import com.github.jaceg18.chess.game.moves.MoveGenerator;
+import com.github.jaceg18.chess.game.moves.strategy.GenerationOrder;
+import com.github.jaceg18.chess.game.moves.strategy.StaticExchangeOrder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Move generation, making and undoing moves and attack detection, each on one position at a time
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+    @Param({Positions.START, Positions.KIWIPETE, Positions.MIDDLEGAME, Positions.ENDGAME})
+    public String position;
+
+    private Bitboard bitboard;
+    private MoveGenerator orderedGenerator;
+    private MoveGenerator unorderedGenerator;
+    private boolean isWhite;
+    private final MoveBuffer buffer = new MoveBuffer();
+    private final MoveBuffer legalMoves = new MoveBuffer();
+    private List<Move> legalMoveList;
+
+    @Setup
+    public void setUp() {
+        String fen = Positions.fen(position);
+        bitboard = new Bitboard(fen, new StaticExchangeOrder());
+        orderedGenerator = bitboard.getMoveGenerator();
+        unorderedGenerator = new Bitboard(fen, new GenerationOrder()).getMoveGenerator();
+        isWhite = bitboard.isWhiteToMove();
+        orderedGenerator.generateMoves(isWhite, legalMoves);
+        legalMoveList = orderedGenerator.generateMoves(isWhite);
+    }
+
+    /**
+     * Every legal move, ordered the way the search orders them
+     */
+    @Benchmark
+    public int generateMoves() {
+        orderedGenerator.generateMoves(isWhite, buffer);
+        return buffer.size();
+    }
+
+    /**
+     * Every legal move with ordering left out, the generator on its own
+     */
+    @Benchmark
+    public int generateMovesUnordered() {
+        unorderedGenerator.generateMoves(isWhite, buffer);
+        return buffer.size();
+    }
+
+    /**
+     * Makes and undoes every legal move with the packed moves the search uses
+     */
+    @Benchmark
+    public long makeUndoMove() {
+        long keys = 0;
+        for (int i = 0; i < legalMoves.size(); i++) {
+            bitboard.makeMove(legalMoves.get(i));
+            keys ^= bitboard.getZobristKey();
+            bitboard.undoMove();
+        }
+        return keys;
+    }
+
+    /**
+     * Makes and undoes every legal move through movePiece, which checks each Move before making it
+     */
+    @Benchmark
+    public long movePieceUndoMove() {
+        long keys = 0;
+        for (Move move : legalMoveList) {
+            bitboard.movePiece(move, isWhite);
+            keys ^= bitboard.getZobristKey();
+            bitboard.undoMove();
+        }
+        return keys;
+    }
+
+    /**
+     * Asks whether each square is attacked, by each side
+     */
+    @Benchmark
+    public int isSquareAttacked() {
+        int attacked = 0;
+        for (int square = 0; square < 64; square++) {
+            if (bitboard.isSquareAttacked(square, true)) attacked++;
+            if (bitboard.isSquareAttacked(square, false)) attacked++;
+        }
+        return attacked;
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.jaceg18.chess.bench;
+
+import com.github.jaceg18.chess.engine.Evaluator;
+import com.github.jaceg18.chess.engine.PawnHashTable;
+import com.github.jaceg18.chess.game.Bitboard;
+import com.github.jaceg18.chess.game.moves.strategy.StaticExchangeOrder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The static evaluation of one position, with the pawn structure computed from scratch and from the pawn hash table
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluationBenchmark {
+    @Param({Positions.START, Positions.KIWIPETE, Positions.MIDDLEGAME, Positions.ENDGAME})
+    public String position;
+
+    private Bitboard bitboard;
+    private final PawnHashTable pawnHashTable = new PawnHashTable(1);
+
+    @Setup
+    public void setUp() {
+        bitboard = new Bitboard(Positions.fen(position), new StaticExchangeOrder());
+    }
+
+    @Benchmark
+    public int evaluate() {
+        return Evaluator.evaluate(bitboard, bitboard.isWhiteToMove());
+    }
+
+    @Benchmark
+    public int evaluateWithPawnHash() {
+        return Evaluator.evaluate(bitboard, bitboard.isWhiteToMove(), pawnHashTable);
+    }
+}
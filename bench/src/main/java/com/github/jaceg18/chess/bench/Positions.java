@@ -0,0 +1,32 @@
+package com.github.jaceg18.chess.bench;
+
+import com.github.jaceg18.chess.game.Bitboard;
+
+/**
+ * The positions every benchmark runs over, picked to cover an opening, a busy middlegame with every special move
+ * available, a quieter middlegame and a rook endgame. Benchmarks take one of these names as a parameter.
+ */
+final class Positions {
+    static final String START = "start";
+    static final String KIWIPETE = "kiwipete";
+    static final String MIDDLEGAME = "middlegame";
+    static final String ENDGAME = "endgame";
+
+    private Positions() {
+    }
+
+    static String fen(String name) {
+        switch (name) {
+            case START:
+                return Bitboard.START_FEN;
+            case KIWIPETE:
+                return "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+            case MIDDLEGAME:
+                return "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10";
+            case ENDGAME:
+                return "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1";
+            default:
+                throw new IllegalArgumentException("Unknown position: " + name);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.jaceg18.chess.bench;
+
+import com.github.jaceg18.chess.engine.Ai;
+import com.github.jaceg18.chess.game.Bitboard;
+import com.github.jaceg18.chess.game.moves.Move;
+import com.github.jaceg18.chess.game.moves.strategy.StaticExchangeOrder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A fixed depth search from one position on a single thread. Each search starts with an empty transposition table,
+ * ordering tables and evaluation caches, so every run searches the same tree. The Ai is built once per iteration
+ * and only cleared between searches, so allocating its tables isn't measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SearchBenchmark {
+    // Small enough that clearing it between searches is quick
+    private static final int HASH_SIZE_MB = 16;
+
+    @Param({Positions.START, Positions.KIWIPETE, Positions.MIDDLEGAME, Positions.ENDGAME})
+    public String position;
+
+    @Param({"9"})
+    public int depth;
+
+    private Ai ai;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        Bitboard bitboard = new Bitboard(Positions.fen(position), new StaticExchangeOrder());
+        ai = new Ai(bitboard, depth, HASH_SIZE_MB);
+    }
+
+    @Setup(Level.Invocation)
+    public void clear() {
+        ai.newGame();
+    }
+
+    @Benchmark
+    public Move search() {
+        return ai.search();
+    }
+}
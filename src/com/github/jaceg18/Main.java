@@ -1,21 +1,21 @@
 package com.github.jaceg18;
 
 import com.github.jaceg18.chess.game.Bitboard;
-import com.github.jaceg18.chess.game.moves.strategy.CaptureCastleOrder;
+import com.github.jaceg18.chess.game.moves.strategy.StaticExchangeOrder;
 import com.github.jaceg18.chess.ui.GamePanel;
+import com.github.jaceg18.chess.ui.SearchStatusBar;
 import com.github.jaceg18.chess.util.SettingsDialog;
 import com.github.jaceg18.chess.util.styles.*;
 
 import javax.swing.*;
+import java.awt.*;
 
 /**
  * TO DO LIST
- * Rework AI class to include Opening Book, Zobrist Hashing for transposition tables, quiescence searches, working multi-threading, and iterative deepening.
+ * Rework AI class to include an Opening Book
  * Remove sample evaluation class and replace with optimized one
  * Make a visually appealing GUI
  * Optimize move generation
- * Add en passant functionality
- * Add move ordering strategies for better pruning
  * Make the code look good, optimize, clean up etc. (The majority of the code now is written badly, I wasn't expecting Chess programming to be this complex, so lots of rushed code needs to be fixed)
  * Restructure logic within the engine
  * Add java doc comments
@@ -46,11 +46,15 @@ public class Main {
         }
 
         int aiDepth = settingsDialog.getSelectedAIDepth();
+        long aiTimeMillis = settingsDialog.getSelectedAITimeMillis();
+        int aiThreads = settingsDialog.getSelectedAIThreads();
+        boolean aiPondering = settingsDialog.isAIPonderingSelected();
 
-        Bitboard board = new Bitboard(new CaptureCastleOrder());
-        GamePanel gamePanel = new GamePanel(board, true, aiDepth, selectedStyle);
+        Bitboard board = new Bitboard(new StaticExchangeOrder());
+        GamePanel gamePanel = new GamePanel(board, true, aiDepth, aiTimeMillis, aiThreads, aiPondering, selectedStyle);
 
         frame.add(gamePanel);
+        frame.add(new SearchStatusBar(gamePanel), BorderLayout.SOUTH);
         frame.pack();
         frame.setResizable(false);
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -0,0 +1,182 @@
+package com.github.jaceg18;
+
+import com.github.jaceg18.chess.game.Bitboard;
+import com.github.jaceg18.chess.game.moves.MoveBuffer;
+import com.github.jaceg18.chess.game.moves.MoveGenerator;
+import com.github.jaceg18.chess.game.moves.PackedMove;
+import com.github.jaceg18.chess.game.moves.strategy.GenerationOrder;
+
+import java.util.Arrays;
+
+/**
+ * Counts the positions reachable in exactly depth moves, to check the move generator against known counts and to
+ * measure its speed. Every move is made and undone, so make and undo are checked along with generation.
+ *
+ * Usage:
+ *   Perft depth [fen]          Counts from the start position, or from the FEN
+ *   Perft divide depth [fen]   Also prints the count below each root move, to track down a wrong total
+ *   Perft suite                Runs the reference positions and checks every count
+ */
+public class Perft {
+    // FEN, depth and the expected count of the standard perft positions
+    private static final Object[][] REFERENCE_POSITIONS = {
+            {Bitboard.START_FEN, 5, 4_865_609L},
+            {"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", 4, 4_085_603L},
+            {"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", 5, 674_624L},
+            {"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1", 4, 422_333L},
+            {"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8", 4, 2_103_487L},
+            {"r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10", 4, 3_894_594L}
+    };
+
+    private final Bitboard bitboard;
+    private final MoveGenerator moveGenerator;
+    private final MoveBuffer[] moveBuffers;
+
+    /**
+     * @param fen The position to count from
+     * @param maxDepth The deepest count this will be asked for
+     */
+    public Perft(String fen, int maxDepth) {
+        this.bitboard = new Bitboard(fen, new GenerationOrder());
+        this.moveGenerator = bitboard.getMoveGenerator();
+        this.moveBuffers = new MoveBuffer[Math.max(maxDepth, 1)];
+        for (int i = 0; i < moveBuffers.length; i++) {
+            moveBuffers[i] = new MoveBuffer();
+        }
+    }
+
+    /**
+     * @return The number of positions exactly depth moves from the starting position
+     */
+    public long perft(int depth) {
+        return perft(bitboard.isWhiteToMove(), depth, 0);
+    }
+
+    /**
+     * Counts the positions below each root move and prints them, one move per line
+     * @return The total, the same as perft(depth)
+     */
+    public long divide(int depth) {
+        boolean isWhite = bitboard.isWhiteToMove();
+        MoveBuffer moves = moveBuffers[0];
+        moveGenerator.generateMoves(isWhite, moves);
+
+        long total = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            bitboard.makeMove(move);
+            long nodes = perft(!isWhite, depth - 1, 1);
+            bitboard.undoMove();
+            System.out.println(PackedMove.toNotation(move) + ": " + nodes);
+            total += nodes;
+        }
+        return total;
+    }
+
+    private long perft(boolean isWhite, int depth, int ply) {
+        if (depth == 0) {
+            return 1;
+        }
+        MoveBuffer moves = moveBuffers[ply];
+        moveGenerator.generateMoves(isWhite, moves);
+        // The moves are all legal, so the last ply doesn't need to make them to count them
+        if (depth == 1) {
+            return moves.size();
+        }
+
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            bitboard.makeMove(moves.get(i));
+            nodes += perft(!isWhite, depth - 1, ply + 1);
+            bitboard.undoMove();
+        }
+        return nodes;
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            printUsage();
+            return;
+        }
+
+        if (args[0].equals("suite")) {
+            System.exit(runSuite() ? 0 : 1);
+        }
+
+        boolean divide = args[0].equals("divide");
+        int argIndex = divide ? 1 : 0;
+        if (args.length <= argIndex) {
+            printUsage();
+            return;
+        }
+        int depth = Integer.parseInt(args[argIndex]);
+        if (depth < 1) {
+            System.err.println("Depth must be at least 1: " + depth);
+            System.exit(2);
+        }
+        String fen = args.length > argIndex + 1 ? String.join(" ", Arrays.copyOfRange(args, argIndex + 1, args.length)) : Bitboard.START_FEN;
+
+        Perft perft;
+        try {
+            perft = new Perft(fen, depth);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        long start = System.nanoTime();
+        long nodes = divide ? perft.divide(depth) : perft.perft(depth);
+        long elapsed = System.nanoTime() - start;
+
+        if (divide) {
+            System.out.println();
+        }
+        System.out.println("Nodes: " + nodes);
+        printSpeed(nodes, elapsed);
+    }
+
+    /**
+     * Runs every reference position and prints each count next to the expected one
+     * @return Did every count match?
+     */
+    private static boolean runSuite() {
+        boolean allPassed = true;
+        long totalNodes = 0;
+        long totalElapsed = 0;
+        for (Object[] position : REFERENCE_POSITIONS) {
+            String fen = (String) position[0];
+            int depth = (Integer) position[1];
+            long expected = (Long) position[2];
+
+            Perft perft = new Perft(fen, depth);
+            long start = System.nanoTime();
+            long nodes = perft.perft(depth);
+            long elapsed = System.nanoTime() - start;
+            totalNodes += nodes;
+            totalElapsed += elapsed;
+
+            boolean passed = nodes == expected;
+            allPassed &= passed;
+            System.out.printf("%s depth %d: %d, expected %d, %d ms  %s%n",
+                    passed ? "PASS" : "FAIL", depth, nodes, expected, elapsed / 1_000_000, fen);
+        }
+        System.out.println();
+        System.out.println(allPassed ? "All positions passed" : "Some positions FAILED");
+        printSpeed(totalNodes, totalElapsed);
+        return allPassed;
+    }
+
+    private static void printSpeed(long nodes, long elapsedNanos) {
+        long millis = elapsedNanos / 1_000_000;
+        long nodesPerSecond = elapsedNanos == 0 ? 0 : nodes * 1_000_000_000L / elapsedNanos;
+        System.out.println("Time: " + millis + " ms");
+        System.out.println("Nodes/second: " + nodesPerSecond);
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage:");
+        System.out.println("  Perft <depth> [fen]          Count the positions depth moves from the start position or the FEN");
+        System.out.println("  Perft divide <depth> [fen]   Also print the count below each root move");
+        System.out.println("  Perft suite                  Check the reference positions");
+    }
+}
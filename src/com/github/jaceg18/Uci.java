@@ -0,0 +1,489 @@
+package com.github.jaceg18;
+
+import com.github.jaceg18.chess.engine.Ai;
+import com.github.jaceg18.chess.engine.SearchLimits;
+import com.github.jaceg18.chess.engine.SearchOptions;
+import com.github.jaceg18.chess.engine.SearchProgress;
+import com.github.jaceg18.chess.game.Bitboard;
+import com.github.jaceg18.chess.game.moves.Move;
+import com.github.jaceg18.chess.game.moves.strategy.GenerationOrder;
+import com.github.jaceg18.chess.game.moves.strategy.StaticExchangeOrder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Runs the engine without the GUI, speaking the Universal Chess Interface on standard input and output,
+ * so tournament managers and analysis tools can drive it.
+ * Commands are read on the main thread and searches run in the background, so stop is handled straight away.
+ * With go ponder the engine searches on the opponent's time, the position given already includes the expected reply.
+ */
+public class Uci {
+    private static final String ENGINE_NAME = "JJChess";
+    private static final String ENGINE_AUTHOR = "jaceg18";
+
+    private static final int DEFAULT_HASH_SIZE_MB = 64;
+    private static final int MAX_HASH_SIZE_MB = 4096;
+    // Every thread carries about 10MB of its own caches on top of Hash, and more threads than cores gain nothing
+    private static final int MAX_THREADS = Runtime.getRuntime().availableProcessors();
+    // Deep enough that only stop or the clock ends the search
+    private static final int MAX_DEPTH = 64;
+    // When the GUI doesn't say how many moves are left until the next time control, plan for this many
+    private static final int DEFAULT_MOVES_TO_GO = 30;
+    // The move time when the GUI sends clocks but not the engine's own
+    private static final long DEFAULT_MOVE_TIME_MILLIS = 1000;
+    // Time kept back from every move for the GUI to receive it
+    private static final long MOVE_OVERHEAD_MILLIS = 50;
+
+    // SearchOptions' switches, offered as check options so their effect can be measured from a GUI or tester
+    private static final String[] SEARCH_SWITCHES = {
+            "PrincipalVariationSearch", "AspirationWindows", "NullMovePruning", "LateMoveReductions",
+            "CheckExtensions", "SeePruning", "EvalCache"
+    };
+
+    private final Bitboard bitboard = new Bitboard(new StaticExchangeOrder());
+    // Kept here so the switches survive the Ai being replaced
+    private final SearchOptions searchOptions = new SearchOptions();
+    private int hashSizeMb = DEFAULT_HASH_SIZE_MB;
+    private int threadCount = 1;
+    private Ai ai;
+
+    private CompletableFuture<Move> search;
+    // An infinite or pondering search may not report its move before it is told to stop, even if it finished early
+    private boolean holdBestMove;
+    // Whether to keep holding the move once a ponder hits, the search it turns into may be infinite too
+    private boolean holdAfterPonderHit;
+    private boolean hasHeldBestMove;
+    private String heldBestMove;
+
+    public Uci() {
+        createAi();
+    }
+
+    public static void main(String[] args) throws IOException {
+        new Uci().run(new BufferedReader(new InputStreamReader(System.in)));
+    }
+
+    /**
+     * Handles commands until quit or the end of the input
+     */
+    public void run(BufferedReader input) throws IOException {
+        String line;
+        while ((line = input.readLine()) != null) {
+            String[] tokens = line.trim().split("\\s+");
+            try {
+                if (!handle(tokens)) {
+                    return;
+                }
+            } catch (RuntimeException e) {
+                // One bad command mustn't end the engine
+                send("info string " + tokens[0] + " failed: " + e);
+            }
+        }
+        stopSearch();
+    }
+
+    /**
+     * @return False once the engine should quit
+     */
+    private boolean handle(String[] tokens) {
+        switch (tokens[0]) {
+            case "uci":
+                send("id name " + ENGINE_NAME);
+                send("id author " + ENGINE_AUTHOR);
+                send("option name Hash type spin default " + DEFAULT_HASH_SIZE_MB + " min 1 max " + MAX_HASH_SIZE_MB);
+                send("option name Threads type spin default 1 min 1 max " + MAX_THREADS);
+                send("option name Ponder type check default false");
+                for (String searchSwitch : SEARCH_SWITCHES) {
+                    send("option name " + searchSwitch + " type check default true");
+                }
+                send("uciok");
+                break;
+            case "isready":
+                send("readyok");
+                break;
+            case "setoption":
+                setOption(tokens);
+                break;
+            case "ucinewgame":
+                stopSearch();
+                ai.newGame();
+                break;
+            case "position":
+                stopSearch();
+                setPosition(tokens);
+                break;
+            case "go":
+                stopSearch();
+                go(tokens);
+                break;
+            case "ponderhit":
+                ponderHit();
+                break;
+            case "stop":
+                stopSearch();
+                break;
+            case "quit":
+                stopSearch();
+                return false;
+            default:
+                // The protocol says to ignore anything unknown
+                break;
+        }
+        return true;
+    }
+
+    /**
+     * setoption name Hash value 128, name Threads value 4, or name NullMovePruning value false for a search switch
+     */
+    private void setOption(String[] tokens) {
+        String name = valueAfter(tokens, "name");
+        String value = valueAfter(tokens, "value");
+        if (name == null || value == null) {
+            return;
+        }
+        try {
+            if (name.equalsIgnoreCase("Hash")) {
+                stopSearch();
+                hashSizeMb = clamp(Integer.parseInt(value), 1, MAX_HASH_SIZE_MB);
+                createAi();
+            } else if (name.equalsIgnoreCase("Threads")) {
+                stopSearch();
+                threadCount = clamp(Integer.parseInt(value), 1, MAX_THREADS);
+                ai.setThreadCount(threadCount);
+            } else if (name.equalsIgnoreCase("Ponder")) {
+                // Nothing to set up, the GUI decides when to send go ponder
+            } else if (isSearchSwitch(name)) {
+                stopSearch();
+                setSearchSwitch(name, value.equalsIgnoreCase("true"));
+                ai.getSearchOptions().copyFrom(searchOptions);
+            } else {
+                send("info string unknown option " + name);
+            }
+        } catch (NumberFormatException e) {
+            send("info string bad value for " + name + ": " + value);
+        }
+    }
+
+    private static boolean isSearchSwitch(String name) {
+        for (String searchSwitch : SEARCH_SWITCHES) {
+            if (searchSwitch.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void setSearchSwitch(String name, boolean on) {
+        switch (name.toLowerCase()) {
+            case "principalvariationsearch":
+                searchOptions.setPrincipalVariationSearch(on);
+                break;
+            case "aspirationwindows":
+                searchOptions.setAspirationWindows(on);
+                break;
+            case "nullmovepruning":
+                searchOptions.setNullMovePruning(on);
+                break;
+            case "latemovereductions":
+                searchOptions.setLateMoveReductions(on);
+                break;
+            case "checkextensions":
+                searchOptions.setCheckExtensions(on);
+                break;
+            case "seepruning":
+                searchOptions.setSeePruning(on);
+                break;
+            case "evalcache":
+                searchOptions.setEvalCache(on);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * position startpos [moves e2e4 ...], or position fen <fen> [moves ...]
+     * The whole command is checked before the board changes, so a bad one leaves the position as it was.
+     */
+    private void setPosition(String[] tokens) {
+        String fen;
+        int index;
+        if (tokens.length > 1 && tokens[1].equals("startpos")) {
+            fen = Bitboard.START_FEN;
+            index = 2;
+        } else if (tokens.length > 1 && tokens[1].equals("fen")) {
+            StringBuilder fenBuilder = new StringBuilder();
+            for (index = 2; index < tokens.length && !tokens[index].equals("moves"); index++) {
+                fenBuilder.append(tokens[index]).append(' ');
+            }
+            fen = fenBuilder.toString();
+        } else {
+            return;
+        }
+        List<String> moves = index < tokens.length && tokens[index].equals("moves")
+                ? Arrays.asList(tokens).subList(index + 1, tokens.length)
+                : Collections.emptyList();
+
+        try {
+            Bitboard position = new Bitboard(fen, new GenerationOrder());
+            for (String notation : moves) {
+                Move move = findMove(position, notation);
+                if (move == null) {
+                    send("info string illegal move " + notation + ", position ignored");
+                    return;
+                }
+                position.movePiece(move, position.isWhiteToMove());
+            }
+        } catch (IllegalArgumentException e) {
+            send("info string " + e.getMessage());
+            return;
+        }
+
+        bitboard.setPosition(fen);
+        for (String notation : moves) {
+            bitboard.movePiece(findMove(bitboard, notation), bitboard.isWhiteToMove());
+        }
+    }
+
+    /**
+     * @param position The board to look on
+     * @param notation A move in coordinate notation, like e2e4 or e7e8q
+     * @return The legal move it names, or null
+     */
+    private static Move findMove(Bitboard position, String notation) {
+        for (Move move : position.getMoveGenerator().generateMoves(position.isWhiteToMove())) {
+            if (move.toNotation().equals(notation)) {
+                return move;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * go with any of depth, movetime, nodes, wtime, btime, winc, binc, movestogo, infinite and ponder
+     */
+    private void go(String[] tokens) {
+        int depth = MAX_DEPTH;
+        boolean hasDepth = false;
+        long moveTime = 0;
+        long nodes = 0;
+        long time = -1;
+        boolean hasClock = false;
+        long increment = 0;
+        int movesToGo = 0;
+        boolean infinite = false;
+        boolean ponder = false;
+        boolean isWhite = bitboard.isWhiteToMove();
+
+        try {
+            for (int i = 1; i < tokens.length; i++) {
+                switch (tokens[i]) {
+                    case "depth":
+                        depth = clamp(Integer.parseInt(tokens[++i]), 1, MAX_DEPTH);
+                        hasDepth = true;
+                        break;
+                    case "movetime":
+                        moveTime = Long.parseLong(tokens[++i]);
+                        break;
+                    case "nodes":
+                        nodes = Long.parseLong(tokens[++i]);
+                        break;
+                    case "wtime":
+                    case "btime":
+                        long sideTime = Long.parseLong(tokens[++i]);
+                        hasClock = true;
+                        if (tokens[i - 1].equals(isWhite ? "wtime" : "btime")) time = sideTime;
+                        break;
+                    case "winc":
+                    case "binc":
+                        long sideIncrement = Long.parseLong(tokens[++i]);
+                        if (tokens[i - 1].equals(isWhite ? "winc" : "binc")) increment = sideIncrement;
+                        break;
+                    case "movestogo":
+                        movesToGo = Integer.parseInt(tokens[++i]);
+                        break;
+                    case "infinite":
+                        infinite = true;
+                        break;
+                    case "ponder":
+                        ponder = true;
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            send("info string bad go command");
+            return;
+        }
+
+        if (moveTime == 0 && time >= 0) {
+            moveTime = timeBudget(time, increment, movesToGo);
+        } else if (moveTime == 0 && hasClock) {
+            // Only the opponent's clock was given, there's nothing to plan with but the search still needs an end
+            moveTime = DEFAULT_MOVE_TIME_MILLIS;
+        }
+        // Without any limit the search runs until stop, like go infinite
+        boolean limited = hasDepth || moveTime > 0 || nodes > 0;
+
+        synchronized (this) {
+            holdAfterPonderHit = infinite || !limited;
+            holdBestMove = ponder || holdAfterPonderHit;
+            hasHeldBestMove = false;
+        }
+        try {
+            if (bitboard.getMoveGenerator().generateMoves(isWhite).isEmpty()) {
+                // Mate or stalemate, there is nothing to search
+                search = CompletableFuture.completedFuture(null);
+                reportBestMove(null);
+                return;
+            }
+            SearchLimits limits = new SearchLimits(depth, moveTime, nodes);
+            search = ponder ? ai.ponderAsync(limits) : ai.searchAsync(limits);
+        } catch (RuntimeException e) {
+            // The GUI still waits for a bestmove
+            send("info string search failed: " + e);
+            search = CompletableFuture.completedFuture(null);
+            reportBestMove(null);
+            return;
+        }
+        search.whenComplete((move, error) -> {
+            if (error == null) {
+                // The node count and cache hit rates, for tuning the Hash option and the evaluation caches
+                send("info string " + ai.getStatistics());
+            }
+            reportBestMove(error == null ? move : null);
+        });
+    }
+
+    /**
+     * The opponent played the expected move, the pondering search carries on under its limits
+     */
+    private void ponderHit() {
+        if (search == null) {
+            return;
+        }
+        ai.ponderHit();
+        synchronized (this) {
+            holdBestMove = holdAfterPonderHit;
+            if (!holdBestMove && hasHeldBestMove) {
+                hasHeldBestMove = false;
+                send(heldBestMove);
+            }
+        }
+    }
+
+    /**
+     * Splits the remaining clock time evenly over the moves left, plus most of the increment
+     */
+    private static long timeBudget(long time, long increment, int movesToGo) {
+        long budget = time / (movesToGo > 0 ? movesToGo : DEFAULT_MOVES_TO_GO) + increment * 3 / 4;
+        return Math.max(1, Math.min(budget, time - MOVE_OVERHEAD_MILLIS));
+    }
+
+    /**
+     * @param move The search's move, or null if there is none
+     */
+    private synchronized void reportBestMove(Move move) {
+        String bestMove;
+        if (move == null) {
+            bestMove = "bestmove 0000";
+        } else {
+            Move ponderMove = ai.getPonderMove();
+            bestMove = "bestmove " + move.toNotation() + (ponderMove == null ? "" : " ponder " + ponderMove.toNotation());
+        }
+
+        if (holdBestMove) {
+            heldBestMove = bestMove;
+            hasHeldBestMove = true;
+            return;
+        }
+        send(bestMove);
+    }
+
+    /**
+     * Stops the running search, if any, and waits for it to report its move
+     */
+    private void stopSearch() {
+        if (search == null) {
+            return;
+        }
+        synchronized (this) {
+            holdBestMove = false;
+            if (hasHeldBestMove) {
+                hasHeldBestMove = false;
+                send(heldBestMove);
+            }
+        }
+        ai.stop();
+        try {
+            search.join();
+        } catch (CompletionException e) {
+            // Reported as bestmove 0000 when it completed
+        }
+        search = null;
+    }
+
+    /**
+     * Creates the Ai, shutting down the old one's threads
+     */
+    private void createAi() {
+        if (ai != null) {
+            ai.shutdown();
+        }
+        ai = new Ai(bitboard, MAX_DEPTH, hashSizeMb);
+        ai.setThreadCount(threadCount);
+        ai.getSearchOptions().copyFrom(searchOptions);
+        ai.setProgressListener(this::reportProgress);
+    }
+
+    private void reportProgress(SearchProgress progress) {
+        StringBuilder info = new StringBuilder("info depth ").append(progress.getDepth());
+        if (progress.isMate()) {
+            info.append(" score mate ").append(progress.getMateInMoves());
+        } else {
+            info.append(" score cp ").append(progress.getScore());
+        }
+        info.append(" nodes ").append(progress.getNodes())
+                .append(" nps ").append(progress.getNodesPerSecond())
+                .append(" time ").append(progress.getElapsedMillis())
+                .append(" pv");
+        for (Move move : progress.getPrincipalVariation()) {
+            info.append(' ').append(move.toNotation());
+        }
+        send(info.toString());
+    }
+
+    /**
+     * @return The tokens after the keyword up to the next keyword, joined by spaces, or null if the keyword is missing
+     */
+    private static String valueAfter(String[] tokens, String keyword) {
+        for (int i = 0; i < tokens.length; i++) {
+            if (tokens[i].equals(keyword)) {
+                StringBuilder value = new StringBuilder();
+                for (int j = i + 1; j < tokens.length && !tokens[j].equals("name") && !tokens[j].equals("value"); j++) {
+                    if (value.length() > 0) value.append(' ');
+                    value.append(tokens[j]);
+                }
+                return value.toString();
+            }
+        }
+        return null;
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static synchronized void send(String message) {
+        System.out.println(message);
+        System.out.flush();
+    }
+}
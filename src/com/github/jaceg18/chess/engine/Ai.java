@@ -4,127 +4,343 @@ import com.github.jaceg18.chess.audio.AudioPlayer;
 import com.github.jaceg18.chess.game.Bitboard;
 import com.github.jaceg18.chess.game.moves.Move;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
-
+/**
+ * Drives the search. With more than one thread this runs a Lazy SMP search: every thread searches the same position
+ * on its own board copy, and they help each other only through the shared transposition table.
+ * The main thread's result is the move played, the helpers just fill the table with results it can reuse.
+ * The search is always for the side to move on the board.
+ * While the opponent thinks, the Ai can ponder: search the reply it expects on the board, ignoring the clock.
+ * If the opponent plays that reply the search carries on as the real one, keeping its depth and table entries.
+ */
 public class Ai {
+    private static final int DEFAULT_HASH_SIZE_MB = 64;
 
-    private final boolean isAiWhite;
-    private int maxDepth;
     private final Bitboard bitboard;
+    private final TranspositionTable transpositionTable;
+    private final AtomicBoolean stopSignal = new AtomicBoolean();
+    private final AtomicLong helperNodes = new AtomicLong();
+    private final SearchOptions searchOptions = new SearchOptions();
+    private SearchLimits limits;
+
+    // workers[0] is the main worker, the rest are helpers
+    private SearchWorker[] workers;
+    private ExecutorService helperPool;
+    // Runs the main worker for searchAsync, created on first use
+    private ExecutorService searchExecutor;
+    // The last background search, which may still be running after its caller's future was cancelled
+    private CompletableFuture<Move> backgroundSearch;
+    private Consumer<SearchProgress> progressListener;
+    // The reply the last search expects to its move, from its principal variation
+    private volatile Move ponderMove;
+
+    public Ai(Bitboard bitboard, int maxDepth) {
+        this(bitboard, maxDepth, DEFAULT_HASH_SIZE_MB);
+    }
 
-    public Ai(Bitboard bitboard, boolean isAiWhite, int maxDepth) {
-        this.isAiWhite = isAiWhite;
-        this.maxDepth = maxDepth;
+    /**
+     * @param bitboard The board to search, the Ai reads it but never changes it except in playMove
+     * @param maxDepth The deepest iteration searched, until setLimits says otherwise
+     * @param hashSizeMb The transposition table's memory budget in megabytes
+     */
+    public Ai(Bitboard bitboard, int maxDepth, int hashSizeMb) {
+        this.limits = SearchLimits.depth(maxDepth);
         this.bitboard = bitboard;
+        this.transpositionTable = new TranspositionTable(hashSizeMb);
+        setThreadCount(1);
     }
 
     public void playMove() {
         Move move = search();
-        bitboard.movePiece(move, isAiWhite);
+        bitboard.movePiece(move, move.isWhite());
         AudioPlayer.playSound(move.isCapture());
     }
 
-    public Move search() {
-        int alpha = Integer.MIN_VALUE;
-        int beta = Integer.MAX_VALUE;
+    /**
+     * Sets the limits every following search runs under
+     * @param limits The depth, time and node limits
+     */
+    public void setLimits(SearchLimits limits) {
+        this.limits = limits;
+    }
+
+    /**
+     * Sets how many threads search in parallel. Must not be called while a search is running.
+     * @param threadCount The number of threads, at least 1
+     */
+    public void setThreadCount(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1: " + threadCount);
+        }
+        if (helperPool != null) {
+            helperPool.shutdownNow();
+            helperPool = null;
+        }
 
-        if (bitboard.getTotalPieceCount() < 8 && maxDepth != 6) {
-            maxDepth = 6;
-            System.out.println("Depth increased for end game");
+        workers = new SearchWorker[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            workers[i] = new SearchWorker(new Bitboard(bitboard), transpositionTable, stopSignal, helperNodes, searchOptions, i == 0);
         }
+        if (threadCount > 1) {
+            helperPool = Executors.newFixedThreadPool(threadCount - 1, runnable -> {
+                Thread thread = new Thread(runnable, "search-helper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
 
-        ScoredMove bestMove = searchHelper(maxDepth, alpha, beta);
+    public int getThreadCount() {
+        return workers.length;
+    }
 
-        if (bestMove == null){
-            throw new NullPointerException("Move is null");
+    /**
+     * @return The search's pruning and extension switches, changes apply from the next search
+     */
+    public SearchOptions getSearchOptions() {
+        return searchOptions;
+    }
+
+    /**
+     * Sets what is told about the main thread's progress, once per completed iteration. The listener is called
+     * on the searching thread.
+     * @param progressListener The listener, or null for none
+     */
+    public void setProgressListener(Consumer<SearchProgress> progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Forgets everything learned from earlier searches: the transposition table, the move ordering history and the
+     * evaluation caches. Must not be called while a search is running.
+     */
+    public void newGame() {
+        transpositionTable.clear();
+        for (SearchWorker worker : workers) {
+            worker.clear();
         }
+    }
 
-        return bestMove.move;
+    /**
+     * Stops any running search and the search threads. The Ai can't search again afterwards.
+     */
+    public void shutdown() {
+        stop();
+        if (helperPool != null) {
+            helperPool.shutdownNow();
+        }
+        if (searchExecutor != null) {
+            searchExecutor.shutdownNow();
+        }
     }
 
-    @SuppressWarnings("all")
-    private ScoredMove searchHelper(int depth, int alpha, int beta) {
-        boolean currentPlayer = isAiWhite;
-        List<Move> moves = bitboard.getMoveGenerator().generateMoves(currentPlayer);
+    /**
+     * Asks a running search to stop as soon as possible. The search still returns the best move it has completed.
+     */
+    public void stop() {
+        stopSignal.set(true);
+    }
 
+    public Move search() {
+        return search(limits);
+    }
 
-        Move bestMove = null;
-        boolean first = true;
+    /**
+     * Searches the current position with every worker and plays the main worker's answer.
+     * The helpers are stopped once the main worker finishes.
+     * @param limits The depth, time and node limits for this search
+     * @return The best move of the main worker's last completed iteration
+     */
+    public Move search(SearchLimits limits) {
+        prepareSearch(null, false);
+        return runSearch(limits);
+    }
 
-        for (Move move : moves) {
-            bitboard.movePiece(move, currentPlayer);
-            int score = currentPlayer == isAiWhite ?
-                    min(alpha, beta, depth - 1) :
-                    max(alpha, beta, depth - 1);
+    public CompletableFuture<Move> searchAsync() {
+        return searchAsync(limits);
+    }
 
-            bitboard.undoMove();
+    /**
+     * Starts a search on a background thread and returns straight away. The position is copied before this returns,
+     * so the board may change while the search runs, and a stop() from now on ends this search.
+     * Cancelling the returned future stops the search too, the move it would have returned is thrown away.
+     * A search still running from an earlier call is stopped and waited for first.
+     * @param limits The depth, time and node limits for this search
+     * @return Completes with the best move, or exceptionally if the side to move has no legal moves
+     */
+    public CompletableFuture<Move> searchAsync(SearchLimits limits) {
+        return startSearch(limits, null, false);
+    }
 
-            if (first || currentPlayer == isAiWhite && score > alpha || currentPlayer != isAiWhite && score < beta) {
-                first = false;
-                bestMove = move;
-                if (currentPlayer == isAiWhite) {
-                    alpha = Math.max(alpha, score);
-                } else {
-                    beta = Math.min(beta, score);
-                }
-            }
+    /**
+     * Starts pondering the position on the board, which should already have the expected reply played.
+     * The search ignores its time limit until ponderHit, the other limits apply as usual.
+     * If the opponent plays something else, cancel the future or stop() and start a new search.
+     * @param limits The limits the search runs under once the ponder hits
+     * @return Completes with the best move, once the search finishes, which may be before the ponder hits
+     */
+    public CompletableFuture<Move> ponderAsync(SearchLimits limits) {
+        return startSearch(limits, null, true);
+    }
 
-            if (alpha >= beta) {
-                break;
-            }
-        }
+    public CompletableFuture<Move> ponderAsync(Move expectedReply) {
+        return ponderAsync(expectedReply, limits);
+    }
 
-        return bestMove == null ? null : new ScoredMove(bestMove, currentPlayer == isAiWhite ? alpha : beta);
+    /**
+     * Starts pondering the position after the expected reply, without changing the board.
+     * @param expectedReply The opponent's move to ponder on, usually getPonderMove()
+     * @param limits The limits the search runs under once the ponder hits
+     * @return Completes with the best move, once the search finishes, which may be before the ponder hits
+     * @see #ponderAsync(SearchLimits)
+     */
+    public CompletableFuture<Move> ponderAsync(Move expectedReply, SearchLimits limits) {
+        return startSearch(limits, expectedReply, true);
     }
 
+    /**
+     * The opponent played the move being pondered on, so the search becomes the real one and its time limit applies.
+     * The clock counts from when pondering started, so time spent pondering shortens the wait for the move.
+     */
+    public void ponderHit() {
+        workers[0].setPondering(false);
+    }
 
-    private int min(int alpha, int beta, int depth) {
-        if (depth <= 0) {
-            return Evaluator.evaluate(bitboard, !isAiWhite);
+    /**
+     * @return The reply the last finished search expects to its move, or null if its best line was too short
+     */
+    public Move getPonderMove() {
+        return ponderMove;
+    }
+
+    private CompletableFuture<Move> startSearch(SearchLimits limits, Move expectedReply, boolean ponder) {
+        if (searchExecutor == null) {
+            searchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "search-main");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        if (backgroundSearch != null && !backgroundSearch.isDone()) {
+            stop();
+            try {
+                backgroundSearch.join();
+            } catch (CompletionException e) {
+                // Its caller has already been told
+            }
         }
 
-        int minScore = Integer.MAX_VALUE;
-        for (Move move : bitboard.getMoveGenerator().generateMoves(!isAiWhite)) {
-            bitboard.movePiece(move, !isAiWhite);
-            int score = max(alpha, beta, depth - 1);
-            bitboard.undoMove();
-            minScore = Math.min(minScore, score);
-            if (beta <= alpha) {
-                break;
+        prepareSearch(expectedReply, ponder);
+        backgroundSearch = CompletableFuture.supplyAsync(() -> runSearch(limits), searchExecutor);
+
+        // Handed out separately, cancelling a supplyAsync future doesn't reach the task running it
+        CompletableFuture<Move> result = new CompletableFuture<>();
+        backgroundSearch.whenComplete((move, error) -> {
+            if (error == null) {
+                result.complete(move);
+            } else {
+                result.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+            }
+        });
+        result.whenComplete((move, error) -> {
+            if (result.isCancelled()) {
+                stop();
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Gives every worker a copy of the position and clears the stop signal
+     * @param expectedReply A move to play on the copies first, or null
+     * @param ponder Should the main worker start out pondering?
+     */
+    private void prepareSearch(Move expectedReply, boolean ponder) {
+        stopSignal.set(false);
+        helperNodes.set(0);
+        ponderMove = null;
+        transpositionTable.newSearch();
+        for (SearchWorker worker : workers) {
+            worker.getBitboard().copyFrom(bitboard);
+            if (expectedReply != null) {
+                worker.getBitboard().movePiece(expectedReply, expectedReply.isWhite());
             }
+            worker.resetStatistics();
         }
-        return minScore;
+        workers[0].setPondering(ponder);
     }
 
-    private int max(int alpha, int beta, int depth) {
-        if (depth <= 0) {
-            return Evaluator.evaluate(bitboard, isAiWhite);
+    private Move runSearch(SearchLimits limits) {
+        boolean isWhite = workers[0].getBitboard().isWhiteToMove();
+        List<Future<?>> helpers = new ArrayList<>();
+        for (int i = 1; i < workers.length; i++) {
+            SearchWorker helper = workers[i];
+            // Half the helpers start one ply deeper so the threads don't all search the same depth at once
+            int startDepth = 1 + (i % 2);
+            helpers.add(helperPool.submit(() -> helper.search(limits, startDepth, null)));
         }
 
-        int maxScore = Integer.MIN_VALUE;
-        for (Move move : bitboard.getMoveGenerator().generateMoves(isAiWhite)) {
-            bitboard.movePiece(move, isAiWhite);
-            int score = min(alpha, beta, depth - 1);
-            bitboard.undoMove();
-            maxScore = Math.max(maxScore, score);
-            alpha = Math.max(alpha, maxScore);
-            if (beta <= alpha) {
-                break;
+        Consumer<SearchProgress> listener = progressListener;
+        SearchWorker.ScoredMove bestMove;
+        try {
+            bestMove = workers[0].search(limits, 1, listener == null ? null : progress -> listener.accept(progress.withNodes(getNodes())));
+        } finally {
+            stopSignal.set(true);
+            for (Future<?> helper : helpers) {
+                awaitHelper(helper);
             }
         }
-        return maxScore;
-    }
 
+        if (bestMove == null){
+            throw new NullPointerException("Move is null");
+        }
 
-    private static class ScoredMove {
-        int score;
-        Move move;
+        List<Move> principalVariation = workers[0].principalVariation();
+        ponderMove = principalVariation.size() > 1 ? principalVariation.get(1) : null;
 
-        public ScoredMove(Move move, int score) {
-            this.move = move;
-            this.score = score;
+        return new Move(bestMove.move, isWhite);
+    }
+
+    /**
+     * @return The number of nodes visited by every thread in the last search
+     */
+    public long getNodes() {
+        long nodes = 0;
+        for (SearchWorker worker : workers) {
+            nodes += worker.getNodes();
+        }
+        return nodes;
+    }
+
+    /**
+     * @return The node count and cache hit rates of the last search, summed over every thread
+     */
+    public SearchStatistics getStatistics() {
+        SearchStatistics statistics = workers[0].getStatistics();
+        for (int i = 1; i < workers.length; i++) {
+            statistics = statistics.plus(workers[i].getStatistics());
         }
+        return statistics;
     }
 
+    private static void awaitHelper(Future<?> helper) {
+        try {
+            helper.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Search helper failed", e.getCause());
+        }
+    }
 }
@@ -0,0 +1,75 @@
+package com.github.jaceg18.chess.engine;
+
+import java.util.Arrays;
+
+/**
+ * A fixed size, lossy cache of static evaluations keyed by Zobrist key. The search reaches the same leaves again and
+ * again at different depths and bounds, and the transposition table only remembers the ones that were stored.
+ * Each entry is a single long, the upper half of the key next to the score, so a new position simply overwrites
+ * whatever shared its slot. Not thread safe, every search thread owns its own cache.
+ */
+public class EvalCache {
+    /** Returned by probe when the position isn't cached */
+    public static final int MISS = Integer.MIN_VALUE;
+
+    private static final int ENTRY_SIZE_BYTES = 8;
+    private static final long KEY_MASK = 0xFFFFFFFF00000000L;
+
+    private final long[] entries;
+    private final int indexMask;
+    private long probes;
+    private long hits;
+
+    /**
+     * @param sizeMb The memory budget in megabytes, rounded down to a power of two number of entries
+     */
+    public EvalCache(int sizeMb) {
+        long requestedEntries = Math.max(1L, (long) sizeMb * 1024 * 1024 / ENTRY_SIZE_BYTES);
+        int size = (int) Math.min(Long.highestOneBit(requestedEntries), 1 << 30);
+        this.entries = new long[size];
+        this.indexMask = size - 1;
+    }
+
+    /**
+     * @param key The position's Zobrist key
+     * @return The cached score from White's side, or MISS
+     */
+    public int probe(long key) {
+        long entry = entries[(int) key & indexMask];
+        probes++;
+        // The low half of the key picked the slot, the high half has to match the entry's
+        if (entry != 0 && (entry & KEY_MASK) == (key & KEY_MASK)) {
+            hits++;
+            return (int) entry;
+        }
+        return MISS;
+    }
+
+    /**
+     * @param key The position's Zobrist key
+     * @param score The static evaluation from White's side
+     */
+    public void store(long key, int score) {
+        entries[(int) key & indexMask] = (key & KEY_MASK) | (score & 0xFFFFFFFFL);
+    }
+
+    public void clear() {
+        Arrays.fill(entries, 0L);
+    }
+
+    /**
+     * Zeroes the probe and hit counters, so they only count the search that follows
+     */
+    public void resetStatistics() {
+        probes = 0;
+        hits = 0;
+    }
+
+    public long getProbes() {
+        return probes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+}
@@ -1,131 +1,168 @@
 package com.github.jaceg18.chess.engine;
 
 import com.github.jaceg18.chess.game.Bitboard;
+import com.github.jaceg18.chess.game.PieceSquareTables;
+import com.github.jaceg18.chess.game.attacks.AttackTables;
 import com.github.jaceg18.chess.game.moves.Move;
+import com.github.jaceg18.chess.game.pieces.PieceType;
 import com.github.jaceg18.chess.util.BitboardUtils;
 
-import java.util.Arrays;
 import java.util.List;
 
 
 public class Evaluator {
 
-    // Example evaluation function, not yet implemented.
-    private static final int PAWN_VALUE = 100;
-    private static final int KNIGHT_VALUE = 300;
-    private static final int BISHOP_VALUE = 300;
-    private static final int ROOK_VALUE = 500;
-    private static final int QUEEN_VALUE = 900;
-    private static final int KING_VALUE = 0;
     private static final int CASTLE_VALUE = 225;
     private static final int MOBILITY_BONUS = 1;
     private static final int CHECKMATE_VALUE = Integer.MAX_VALUE;
     private static final int STALEMATE_VALUE = 0;
     private static final int CHECK_PUNISHMENT = 200;
     private static final int PROTECTING_PAWN_SCORE = 20;
+    private static final int DOUBLED_PAWN_MIDDLEGAME = -10;
+    private static final int DOUBLED_PAWN_ENDGAME = -20;
+    private static final int ISOLATED_PAWN_MIDDLEGAME = -10;
+    private static final int ISOLATED_PAWN_ENDGAME = -15;
+    // Bonus for a passed pawn by how far it has advanced, from its second rank to its seventh
+    private static final int[] PASSED_PAWN_MIDDLEGAME = {5, 10, 15, 25, 40, 60};
+    private static final int[] PASSED_PAWN_ENDGAME = {10, 15, 25, 40, 60, 90};
+
+    private static final long[] FILE_MASKS = new long[8];
+    private static final long[] ADJACENT_FILE_MASKS = new long[8];
+    // The squares in front of a pawn on its own and the neighbouring files, which must be free of enemy pawns for it to be passed
+    private static final long[] WHITE_PASSED_PAWN_MASKS = new long[64];
+    private static final long[] BLACK_PASSED_PAWN_MASKS = new long[64];
+
+    static {
+        for (int file = 0; file < 8; file++) {
+            FILE_MASKS[file] = 0x0101010101010101L << file;
+        }
+        for (int file = 0; file < 8; file++) {
+            ADJACENT_FILE_MASKS[file] = (file > 0 ? FILE_MASKS[file - 1] : 0) | (file < 7 ? FILE_MASKS[file + 1] : 0);
+        }
+        for (int square = 0; square < 64; square++) {
+            long files = FILE_MASKS[square & 7] | ADJACENT_FILE_MASKS[square & 7];
+            for (int row = 0; row < 8; row++) {
+                long rowMask = 0xFFL << (row * 8);
+                // White pawns move towards row 0, Black pawns towards row 7
+                if (row < square >> 3) {
+                    WHITE_PASSED_PAWN_MASKS[square] |= files & rowMask;
+                } else if (row > square >> 3) {
+                    BLACK_PASSED_PAWN_MASKS[square] |= files & rowMask;
+                }
+            }
+        }
+    }
 
-    private static final int[] BLACK_PAWN_TABLE = {
-            0,  0,  0,   0,   0,   0,  0, 0,
-            25, 10, 15, -10, -10, 15, 10, 25,
-            5, -5, -10,  5,   5,  -10, -5, 5,
-            0, 0, 0, 20, 20, 0, 0, 0,
-            5, 5, 10, 25, 25, 10, 5, 5,
-            10, 10, 20, 30, 30, 20, 10, 10,
-            50, 50, 50, 50, 50, 50, 50, 50,
-            500, 500, 500, 500, 500, 500, 500, 500
-    };
-
-    private static final int[] WHITE_PAWN_TABLE = flipTable(BLACK_PAWN_TABLE);
-
+    /**
+     * Scores a position without a pawn hash table, computing the pawn structure from scratch
+     * @param isWhite The side the score is for
+     */
     public static int evaluate(Bitboard bitboard, boolean isWhite) {
-        boolean currentSideKingInCheck = bitboard.isSquareAttacked(isWhite ? (int) bitboard.getWhiteKing() : (int) bitboard.getBlackKing(), isWhite);
-        int whiteKingLocation = BitboardUtils.bitboardToSquareIndex(bitboard.getWhiteKing());
-        int blackKingLocation = BitboardUtils.bitboardToSquareIndex(bitboard.getBlackKing());
-        boolean isOutOfMoves = bitboard.getMoveList().stream().filter(Move::isWhite).toList().isEmpty();
-
-       if (currentSideKingInCheck && isOutOfMoves) {
-           return -CHECKMATE_VALUE;
-       } else if (isOutOfMoves){
-           return 0;
-       }
-
-        return getMaterialScore(bitboard, isWhite) + getKingProtectionScore(bitboard, isWhite, whiteKingLocation, blackKingLocation) + getPawnTableScore(bitboard, isWhite);// + mobilityBonus;
+        return evaluate(bitboard, isWhite, null);
     }
 
-    private static int getMaterialScore(Bitboard bitboard, boolean isWhite) {
-        int whitePawnCount = Long.bitCount(bitboard.getWhitePawns());
-        int whiteKnightCount = Long.bitCount(bitboard.getWhiteKnights());
-        int whiteBishopCount = Long.bitCount(bitboard.getWhiteBishops());
-        int whiteRookCount = Long.bitCount(bitboard.getWhiteRooks());
-        int whiteQueenCount = Long.bitCount(bitboard.getWhiteQueens());
-
-        int blackPawnCount = Long.bitCount(bitboard.getBlackPawns());
-        int blackKnightCount = Long.bitCount(bitboard.getBlackKnights());
-        int blackBishopCount = Long.bitCount(bitboard.getBlackBishops());
-        int blackRookCount = Long.bitCount(bitboard.getBlackRooks());
-        int blackQueenCount = Long.bitCount(bitboard.getBlackQueens());
-
-        int whiteMaterialScore = PAWN_VALUE * whitePawnCount +
-                KNIGHT_VALUE * whiteKnightCount +
-                BISHOP_VALUE * whiteBishopCount +
-                ROOK_VALUE * whiteRookCount +
-                QUEEN_VALUE * whiteQueenCount +
-                KING_VALUE;
-
-        int blackMaterialScore = PAWN_VALUE * blackPawnCount +
-                KNIGHT_VALUE * blackKnightCount +
-                BISHOP_VALUE * blackBishopCount +
-                ROOK_VALUE * blackRookCount +
-                QUEEN_VALUE * blackQueenCount +
-                KING_VALUE;
-
-        return isWhite ? whiteMaterialScore - blackMaterialScore : blackMaterialScore - whiteMaterialScore;
+    /**
+     * Scores a position. Every term is one side's score minus the other's, so evaluate(b, true) == -evaluate(b, false).
+     * Material and piece-square values come from the board's running totals and the pawn terms from the pawn hash table,
+     * so only the castling term is computed here.
+     * The middlegame and endgame scores are blended by the game phase, so the weights shift gradually as pieces come off.
+     * @param isWhite The side the score is for
+     * @param pawnHashTable The table to cache pawn structure scores in, or null to compute them every time
+     */
+    public static int evaluate(Bitboard bitboard, boolean isWhite, PawnHashTable pawnHashTable) {
+        // Checkmate and stalemate are scored by the search, which knows when a side has no moves left
+        PawnHashTable.Entry pawns = pawnHashTable != null ? pawnHashTable.probe(bitboard) : PawnHashTable.Entry.of(bitboard);
+
+        int phase = Math.min(bitboard.getPhase(), PieceSquareTables.MAX_PHASE);
+        int middlegameScore = bitboard.getMiddlegameScore() + pawns.middlegameScore + getKingProtectionScore(bitboard, pawns);
+        int endgameScore = bitboard.getEndgameScore() + pawns.endgameScore;
+
+        int score = (middlegameScore * phase + endgameScore * (PieceSquareTables.MAX_PHASE - phase)) / PieceSquareTables.MAX_PHASE;
+        return isWhite ? score : -score;
     }
 
-    private static int getKingProtectionScore(Bitboard bitboard, boolean isWhite, int whiteKingLocation, int blackKingLocation){
-        int score = 0;
-        score += getCastleScore(bitboard, isWhite) + kingLocationScore(bitboard, isWhite, whiteKingLocation, blackKingLocation) + getKingBlockScore(bitboard, isWhite, whiteKingLocation, blackKingLocation);
-        return score;
+    /**
+     * @return The value of a piece, 0 for kings
+     */
+    public static int pieceValue(PieceType pieceType) {
+        return PieceSquareTables.materialValue(pieceType);
     }
 
-    private static int getPawnTableScore(Bitboard bitboard, boolean isWhite) {
-        long pawns = isWhite ? bitboard.getWhitePawns() : bitboard.getBlackPawns();
-        int[] pawnTable = isWhite ? WHITE_PAWN_TABLE : BLACK_PAWN_TABLE;
-        int score = 0;
+    /**
+     * Scores the doubled, isolated and passed pawns of both sides into a pawn hash table entry
+     */
+    static void scorePawnStructure(Bitboard bitboard, PawnHashTable.Entry entry) {
+        long whitePawns = bitboard.getWhitePawns();
+        long blackPawns = bitboard.getBlackPawns();
+        entry.middlegameScore = 0;
+        entry.endgameScore = 0;
+
+        for (int file = 0; file < 8; file++) {
+            int whiteOnFile = Long.bitCount(whitePawns & FILE_MASKS[file]);
+            int blackOnFile = Long.bitCount(blackPawns & FILE_MASKS[file]);
+            int doubled = Math.max(whiteOnFile - 1, 0) - Math.max(blackOnFile - 1, 0);
+            entry.middlegameScore += doubled * DOUBLED_PAWN_MIDDLEGAME;
+            entry.endgameScore += doubled * DOUBLED_PAWN_ENDGAME;
+
+            int isolated = ((whitePawns & ADJACENT_FILE_MASKS[file]) == 0 ? whiteOnFile : 0)
+                    - ((blackPawns & ADJACENT_FILE_MASKS[file]) == 0 ? blackOnFile : 0);
+            entry.middlegameScore += isolated * ISOLATED_PAWN_MIDDLEGAME;
+            entry.endgameScore += isolated * ISOLATED_PAWN_ENDGAME;
+        }
 
-        for (int i = 0; i < 64; i++) {
-            if ((pawns & (1L << i)) != 0) {
-                score += pawnTable[i];
+        for (long pawns = whitePawns; pawns != 0; pawns &= pawns - 1) {
+            int square = Long.numberOfTrailingZeros(pawns);
+            if ((blackPawns & WHITE_PASSED_PAWN_MASKS[square]) == 0) {
+                // Row 6 is White's second rank
+                entry.middlegameScore += PASSED_PAWN_MIDDLEGAME[6 - (square >> 3)];
+                entry.endgameScore += PASSED_PAWN_ENDGAME[6 - (square >> 3)];
+            }
+        }
+        for (long pawns = blackPawns; pawns != 0; pawns &= pawns - 1) {
+            int square = Long.numberOfTrailingZeros(pawns);
+            if ((whitePawns & BLACK_PASSED_PAWN_MASKS[square]) == 0) {
+                // Row 1 is Black's second rank
+                entry.middlegameScore -= PASSED_PAWN_MIDDLEGAME[(square >> 3) - 1];
+                entry.endgameScore -= PASSED_PAWN_ENDGAME[(square >> 3) - 1];
             }
         }
-
-        return score;
     }
 
-    private static int getKingBlockScore(Bitboard bitboard, boolean isWhite, int whiteKingLocation, int blackKingLocation){
-        int score = 0;
-        int kingLocation = isWhite ? whiteKingLocation : blackKingLocation;
-        long pawns = isWhite ? bitboard.getWhitePawns() : bitboard.getBlackPawns();
-        int dir = isWhite ? -8 : 8;
-
-        int[] frontSquares = {kingLocation + dir, kingLocation + dir - 1, kingLocation + dir + 1};
+    /**
+     * Castling and a pawn shield only matter while there are pieces left to attack the king, so this is a middlegame term.
+     * The shields are cached in the pawn entry until the king moves.
+     * @return White's king safety minus Black's
+     */
+    private static int getKingProtectionScore(Bitboard bitboard, PawnHashTable.Entry pawns){
+        int whiteKingLocation = BitboardUtils.bitboardToSquareIndex(bitboard.getWhiteKing());
+        int blackKingLocation = BitboardUtils.bitboardToSquareIndex(bitboard.getBlackKing());
 
-        for (int frontSquare : frontSquares) {
-            if (frontSquare >= 0 && frontSquare < 64) {
-                if ((pawns & (1L << frontSquare)) != 0) {
-                    score += PROTECTING_PAWN_SCORE;
-                }
-            }
+        if (pawns.whiteKingSquare != whiteKingLocation) {
+            pawns.whiteKingSquare = whiteKingLocation;
+            pawns.whiteShelter = getPawnShieldScore(whiteKingLocation, bitboard.getWhitePawns(), true);
+        }
+        if (pawns.blackKingSquare != blackKingLocation) {
+            pawns.blackKingSquare = blackKingLocation;
+            pawns.blackShelter = getPawnShieldScore(blackKingLocation, bitboard.getBlackPawns(), false);
         }
 
-        return score;
+        return getCastleScore(bitboard) + pawns.whiteShelter - pawns.blackShelter;
     }
 
-    private static int getCastleScore(Bitboard bitboard, boolean isWhite) {
+    private static int getPawnShieldScore(int kingLocation, long pawns, boolean isWhite) {
+        long kingRow = 0xFFL << (kingLocation & ~7);
+
+        // The three squares directly in front of the king
+        long shield = AttackTables.kingAttacks(kingLocation) & (isWhite ? kingRow >>> 8 : kingRow << 8);
+
+        return Long.bitCount(shield & pawns) * PROTECTING_PAWN_SCORE;
+    }
+
+    private static int getCastleScore(Bitboard bitboard) {
         int whiteCastleScore = bitboard.isWhiteCastled() ? CASTLE_VALUE : 0;
         int blackCastleScore = bitboard.isBlackCastled() ? CASTLE_VALUE : 0;
 
-        return isWhite ? whiteCastleScore - blackCastleScore : blackCastleScore - whiteCastleScore;
+        return whiteCastleScore - blackCastleScore;
     }
 
 
@@ -133,25 +170,6 @@ public class Evaluator {
         return movesSize * MOBILITY_BONUS;
     }
 
-    private static int kingLocationScore(Bitboard bitboard, boolean isWhite, int whiteKingLocation, int blackKingLocation) {
-        int blackScore = 0;
-        int whiteScore = 0;
-
-        if (blackKingLocation == 0 || blackKingLocation == 1 || blackKingLocation == 2 || blackKingLocation == 3 || blackKingLocation == 4 || blackKingLocation == 5 || blackKingLocation == 6 || blackKingLocation == 7)
-            blackScore += 500;
-
-        if (blackKingLocation == 8 || blackKingLocation == 9 || blackKingLocation == 10 || blackKingLocation == 11 || blackKingLocation == 12 || blackKingLocation == 13 || blackKingLocation == 14 || blackKingLocation == 15)
-            blackScore -= 500;
-
-        if (whiteKingLocation == 56 || whiteKingLocation == 57 || whiteKingLocation == 58 || whiteKingLocation == 59 || whiteKingLocation == 60 || whiteKingLocation == 61 || whiteKingLocation == 62 || whiteKingLocation == 63)
-            whiteScore += 500;
-        else {
-            whiteScore -= 500;
-        }
-
-        return isWhite ? whiteScore : blackScore;
-    }
-
     public static boolean isCheckmate(Bitboard bitboard, boolean isWhite, boolean kingInCheck, List<Move> moves) {
         return moves.isEmpty() && kingInCheck;
     }
@@ -160,12 +178,4 @@ public class Evaluator {
         return moves.isEmpty() && !kingInCheck;
     }
 
-    private static int[] flipTable(int[] table) {
-        int[] flippedTable = new int[table.length];
-        for (int i = 0; i < table.length; i++) {
-            flippedTable[i] = table[table.length - i - 1];
-        }
-        return flippedTable;
-    }
-
 }
@@ -0,0 +1,102 @@
+package com.github.jaceg18.chess.engine;
+
+import com.github.jaceg18.chess.game.Bitboard;
+
+/**
+ * A small hash table of pawn structure scores keyed by the board's pawn key. Pawns move far less often than the other
+ * pieces, so almost every evaluation finds its pawn terms here instead of recomputing them.
+ * The king shelter also depends on where the king stands, so each entry remembers the shelter for the last king square
+ * it was asked about. Not thread safe, every search thread owns its own table.
+ */
+public class PawnHashTable {
+    // Two longs, six ints and the object header, rounded up
+    private static final int ENTRY_SIZE_BYTES = 64;
+
+    private final Entry[] entries;
+    private final int indexMask;
+    private long probes;
+    private long hits;
+
+    /**
+     * @param sizeMb The memory budget in megabytes, rounded down to a power of two number of entries
+     */
+    public PawnHashTable(int sizeMb) {
+        long requestedEntries = Math.max(1L, (long) sizeMb * 1024 * 1024 / ENTRY_SIZE_BYTES);
+        int size = (int) Math.min(Long.highestOneBit(requestedEntries), 1 << 24);
+        this.entries = new Entry[size];
+        for (int i = 0; i < size; i++) {
+            entries[i] = new Entry();
+        }
+        this.indexMask = size - 1;
+    }
+
+    /**
+     * Looks up the board's pawn structure, scoring it and replacing whatever shared its slot if it isn't stored
+     * @return The entry for the board's pawns
+     */
+    Entry probe(Bitboard bitboard) {
+        long key = bitboard.getPawnKey();
+        Entry entry = entries[(int) key & indexMask];
+        probes++;
+        if (entry.isUsed && entry.key == key) {
+            hits++;
+            return entry;
+        }
+        entry.fill(bitboard);
+        return entry;
+    }
+
+    public void clear() {
+        for (Entry entry : entries) {
+            entry.isUsed = false;
+        }
+    }
+
+    /**
+     * Zeroes the probe and hit counters, so they only count the search that follows
+     */
+    public void resetStatistics() {
+        probes = 0;
+        hits = 0;
+    }
+
+    public long getProbes() {
+        return probes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * The pawn structure terms of one set of pawns, from White's side
+     */
+    static final class Entry {
+        private boolean isUsed;
+        private long key;
+        int middlegameScore;
+        int endgameScore;
+        // The king squares the shelters were last computed for, -1 when not computed yet
+        int whiteKingSquare;
+        int whiteShelter;
+        int blackKingSquare;
+        int blackShelter;
+
+        /**
+         * Scores a board's pawns into an entry that isn't stored in any table
+         */
+        static Entry of(Bitboard bitboard) {
+            Entry entry = new Entry();
+            entry.fill(bitboard);
+            return entry;
+        }
+
+        private void fill(Bitboard bitboard) {
+            isUsed = true;
+            key = bitboard.getPawnKey();
+            Evaluator.scorePawnStructure(bitboard, this);
+            whiteKingSquare = -1;
+            blackKingSquare = -1;
+        }
+    }
+}
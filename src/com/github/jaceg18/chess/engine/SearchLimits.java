@@ -0,0 +1,38 @@
+package com.github.jaceg18.chess.engine;
+
+/**
+ * When an iterative deepening search should stop. A limit of 0 means that limit is unused.
+ */
+public class SearchLimits {
+    private final int maxDepth;
+    private final long moveTimeMillis;
+    private final long maxNodes;
+
+    /**
+     * @param maxDepth The deepest iteration to search
+     * @param moveTimeMillis The wall clock budget for the move, 0 for no time limit
+     * @param maxNodes The node budget for the move, counted over every thread, 0 for no node limit.
+     *                 Each helper's count is only seen every few thousand nodes, so a parallel search may go a little over.
+     */
+    public SearchLimits(int maxDepth, long moveTimeMillis, long maxNodes) {
+        this.maxDepth = maxDepth;
+        this.moveTimeMillis = moveTimeMillis;
+        this.maxNodes = maxNodes;
+    }
+
+    public static SearchLimits depth(int maxDepth) {
+        return new SearchLimits(maxDepth, 0, 0);
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public long getMoveTimeMillis() {
+        return moveTimeMillis;
+    }
+
+    public long getMaxNodes() {
+        return maxNodes;
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.jaceg18.chess.engine;
+
+/**
+ * Switches for the search's pruning and extension techniques and its caches, so the effect of each can be measured on its own.
+ * Everything is on by default. Changes take effect from the next search.
+ */
+public class SearchOptions {
+    private boolean principalVariationSearch = true;
+    private boolean aspirationWindows = true;
+    private boolean nullMovePruning = true;
+    private boolean lateMoveReductions = true;
+    private boolean checkExtensions = true;
+    private boolean seePruning = true;
+    private boolean evalCache = true;
+
+    /**
+     * Sets every switch to another set's value
+     * @param other The switches to copy
+     */
+    public void copyFrom(SearchOptions other) {
+        principalVariationSearch = other.principalVariationSearch;
+        aspirationWindows = other.aspirationWindows;
+        nullMovePruning = other.nullMovePruning;
+        lateMoveReductions = other.lateMoveReductions;
+        checkExtensions = other.checkExtensions;
+        seePruning = other.seePruning;
+        evalCache = other.evalCache;
+    }
+
+    /**
+     * Search every move after the first with a null window, and only re-search the ones that beat alpha
+     */
+    public boolean isPrincipalVariationSearch() {
+        return principalVariationSearch;
+    }
+
+    public void setPrincipalVariationSearch(boolean principalVariationSearch) {
+        this.principalVariationSearch = principalVariationSearch;
+    }
+
+    /**
+     * Start each iteration with a narrow window around the previous iteration's score
+     */
+    public boolean isAspirationWindows() {
+        return aspirationWindows;
+    }
+
+    public void setAspirationWindows(boolean aspirationWindows) {
+        this.aspirationWindows = aspirationWindows;
+    }
+
+    /**
+     * Give the opponent a free move at reduced depth, and cut the node if they still can't get below beta
+     */
+    public boolean isNullMovePruning() {
+        return nullMovePruning;
+    }
+
+    public void setNullMovePruning(boolean nullMovePruning) {
+        this.nullMovePruning = nullMovePruning;
+    }
+
+    /**
+     * Search quiet moves late in the move order to a reduced depth
+     */
+    public boolean isLateMoveReductions() {
+        return lateMoveReductions;
+    }
+
+    public void setLateMoveReductions(boolean lateMoveReductions) {
+        this.lateMoveReductions = lateMoveReductions;
+    }
+
+    /**
+     * Search one ply deeper when the side to move is in check
+     */
+    public boolean isCheckExtensions() {
+        return checkExtensions;
+    }
+
+    public void setCheckExtensions(boolean checkExtensions) {
+        this.checkExtensions = checkExtensions;
+    }
+
+    /**
+     * Skip captures that lose material by static exchange, in the quiescence search and near the leaves
+     */
+    public boolean isSeePruning() {
+        return seePruning;
+    }
+
+    public void setSeePruning(boolean seePruning) {
+        this.seePruning = seePruning;
+    }
+
+    /**
+     * Remember static evaluations by Zobrist key, so leaves reached again aren't evaluated again
+     */
+    public boolean isEvalCache() {
+        return evalCache;
+    }
+
+    public void setEvalCache(boolean evalCache) {
+        this.evalCache = evalCache;
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.jaceg18.chess.engine;
+
+import com.github.jaceg18.chess.game.moves.Move;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A snapshot of a running search, taken each time the main thread completes an iteration
+ */
+public class SearchProgress {
+    private final int depth;
+    private final int score;
+    private final long nodes;
+    private final long elapsedMillis;
+    private final List<Move> principalVariation;
+
+    /**
+     * @param depth The depth just completed
+     * @param score The score of the best move, from the side to move's point of view
+     * @param nodes The nodes visited so far
+     * @param elapsedMillis The time since the search started
+     * @param principalVariation The best line found, starting with the move to play
+     */
+    public SearchProgress(int depth, int score, long nodes, long elapsedMillis, List<Move> principalVariation) {
+        this.depth = depth;
+        this.score = score;
+        this.nodes = nodes;
+        this.elapsedMillis = elapsedMillis;
+        this.principalVariation = Collections.unmodifiableList(new ArrayList<>(principalVariation));
+    }
+
+    /**
+     * @return The same snapshot with the node count replaced, for adding in the helper threads' nodes
+     */
+    SearchProgress withNodes(long nodes) {
+        return new SearchProgress(depth, score, nodes, elapsedMillis, principalVariation);
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return The score in centipawns from the side to move's point of view, or a mate score beyond MATE_THRESHOLD
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * @return Has the search found a forced mate, for either side?
+     */
+    public boolean isMate() {
+        return Math.abs(score) > SearchWorker.MATE_THRESHOLD;
+    }
+
+    /**
+     * @return The number of moves to the mate, negative when the side to move is getting mated. Only meaningful if isMate.
+     */
+    public int getMateInMoves() {
+        int plies = SearchWorker.MATE_SCORE - Math.abs(score);
+        int moves = (plies + 1) / 2;
+        return score > 0 ? moves : -moves;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return Nodes searched per second so far, summed over every thread
+     */
+    public long getNodesPerSecond() {
+        return elapsedMillis == 0 ? 0 : nodes * 1000 / elapsedMillis;
+    }
+
+    /**
+     * @return The best line found, starting with the move to play
+     */
+    public List<Move> getPrincipalVariation() {
+        return principalVariation;
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.jaceg18.chess.engine;
+
+/**
+ * What a search did, summed over every search thread: the nodes visited and how well the evaluation caches worked.
+ */
+public class SearchStatistics {
+    private final long nodes;
+    private final long evalCacheProbes;
+    private final long evalCacheHits;
+    private final long pawnHashProbes;
+    private final long pawnHashHits;
+
+    public SearchStatistics(long nodes, long evalCacheProbes, long evalCacheHits, long pawnHashProbes, long pawnHashHits) {
+        this.nodes = nodes;
+        this.evalCacheProbes = evalCacheProbes;
+        this.evalCacheHits = evalCacheHits;
+        this.pawnHashProbes = pawnHashProbes;
+        this.pawnHashHits = pawnHashHits;
+    }
+
+    /**
+     * @return The sum of two threads' statistics
+     */
+    public SearchStatistics plus(SearchStatistics other) {
+        return new SearchStatistics(nodes + other.nodes, evalCacheProbes + other.evalCacheProbes,
+                evalCacheHits + other.evalCacheHits, pawnHashProbes + other.pawnHashProbes, pawnHashHits + other.pawnHashHits);
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getEvalCacheProbes() {
+        return evalCacheProbes;
+    }
+
+    public long getEvalCacheHits() {
+        return evalCacheHits;
+    }
+
+    /**
+     * @return The fraction of evaluations answered from the eval cache, 0 if it wasn't used
+     */
+    public double getEvalCacheHitRate() {
+        return evalCacheProbes == 0 ? 0 : (double) evalCacheHits / evalCacheProbes;
+    }
+
+    public long getPawnHashProbes() {
+        return pawnHashProbes;
+    }
+
+    public long getPawnHashHits() {
+        return pawnHashHits;
+    }
+
+    /**
+     * @return The fraction of evaluations that found their pawn structure in the pawn hash table
+     */
+    public double getPawnHashHitRate() {
+        return pawnHashProbes == 0 ? 0 : (double) pawnHashHits / pawnHashProbes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("nodes %d, eval cache hits %.1f%%, pawn hash hits %.1f%%",
+                nodes, getEvalCacheHitRate() * 100, getPawnHashHitRate() * 100);
+    }
+}
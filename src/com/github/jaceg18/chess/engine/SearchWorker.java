@@ -0,0 +1,669 @@
+package com.github.jaceg18.chess.engine;
+
+import com.github.jaceg18.chess.game.Bitboard;
+import com.github.jaceg18.chess.game.moves.Move;
+import com.github.jaceg18.chess.game.moves.MoveBuffer;
+import com.github.jaceg18.chess.game.moves.MovePicker;
+import com.github.jaceg18.chess.game.moves.PackedMove;
+import com.github.jaceg18.chess.game.moves.strategy.SearchContext;
+import com.github.jaceg18.chess.game.pieces.PieceType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * One search thread. Each worker owns its own copy of the board and its own per-ply state,
+ * while all workers of an Ai share the transposition table and a stop signal.
+ */
+public class SearchWorker {
+    static final int MAX_PLY = 128;
+    static final int MATE_SCORE = 1_000_000;
+    // Any score beyond this is a forced mate
+    static final int MATE_THRESHOLD = MATE_SCORE - MAX_PLY;
+    // Wider than any score, and safe to negate unlike Integer.MIN_VALUE
+    private static final int INFINITY = MATE_SCORE + 1;
+    // A capture that can't lift the stand pat score to within this of alpha isn't worth searching
+    private static final int DELTA_MARGIN = 200;
+    // Half width of the first aspiration window, and the shallowest iteration that uses one
+    private static final int ASPIRATION_WINDOW = 50;
+    private static final int ASPIRATION_MIN_DEPTH = 4;
+    private static final int NULL_MOVE_MIN_DEPTH = 3;
+    // Late move reductions start at this depth, from this move on
+    private static final int LMR_MIN_DEPTH = 3;
+    private static final int LMR_MIN_MOVE_INDEX = 4;
+    // Near the leaves, captures losing more than this per remaining ply are pruned
+    private static final int SEE_PRUNING_MAX_DEPTH = 3;
+    private static final int SEE_PRUNING_MARGIN = 100;
+    private static final int NO_CUTOFF = Integer.MIN_VALUE;
+    // How many nodes to search between clock checks
+    private static final int TIME_CHECK_INTERVAL = 2048;
+    // Pawn structures repeat so much that a small table holds nearly all of them
+    private static final int PAWN_HASH_SIZE_MB = 1;
+    private static final int EVAL_CACHE_SIZE_MB = 8;
+    // Mixed into the eval cache key, since the castling bonus depends on whether a side has castled and the Zobrist key doesn't
+    private static final long WHITE_CASTLED_KEY = 0x9E3779B97F4A7C15L;
+    private static final long BLACK_CASTLED_KEY = 0xC2B2AE3D27D4EB4FL;
+
+    // One move buffer per ply, reused for the whole game so the search doesn't allocate
+    private final MoveBuffer[] moveBuffers = new MoveBuffer[MAX_PLY];
+    private final MovePicker[] movePickers = new MovePicker[MAX_PLY];
+    // Killer, history and countermove tables, fed from beta cutoffs and read by the move ordering
+    private final SearchContext searchContext = new SearchContext();
+    private final PawnHashTable pawnHashTable = new PawnHashTable(PAWN_HASH_SIZE_MB);
+    private final EvalCache evalCache = new EvalCache(EVAL_CACHE_SIZE_MB);
+    // The quiet moves searched so far at each ply, which lose history when a later move cuts off
+    private final int[][] quietsTried = new int[MAX_PLY][MoveBuffer.CAPACITY];
+    // The side to move at the root of the search currently running
+    private boolean rootIsWhite;
+    private final Bitboard bitboard;
+    private final TranspositionTable transpositionTable;
+    private final AtomicBoolean stopSignal;
+    // The helpers' nodes, added in batches of TIME_CHECK_INTERVAL, so the main worker can apply the node limit to the total
+    private final AtomicLong helperNodes;
+    private final SearchOptions options;
+    private final boolean isMainWorker;
+
+    // Triangular principal variation table: pvTable[ply] holds the best line found from that ply
+    private final int[][] pvTable = new int[MAX_PLY][MAX_PLY];
+    private final int[] pvLength = new int[MAX_PLY];
+    // The best line of the last completed iteration, tried first by the next one
+    private final int[] previousPv = new int[MAX_PLY];
+    private int previousPvLength;
+    private boolean followPv;
+
+    // The limits of the search currently running
+    private SearchLimits activeLimits;
+    private long nodes;
+    // nodes as other threads see it, copied every TIME_CHECK_INTERVAL nodes and when the search ends
+    private volatile long publishedNodes;
+    private long deadline;
+    // While pondering the clock is ignored, it counts from the start of the search once the ponder hits
+    private volatile boolean pondering;
+    private boolean stopped;
+    private int currentDepth;
+
+    /**
+     * @param bitboard This worker's own board, which it is free to make and undo moves on
+     * @param transpositionTable The table shared by every worker
+     * @param stopSignal Set when every worker should stop
+     * @param helperNodes Counts the nodes of every helper, shared by every worker
+     * @param options The pruning and extension switches, shared by every worker
+     * @param isMainWorker The main worker owns the clock and its result is the one played; helpers just fill the table
+     */
+    public SearchWorker(Bitboard bitboard, TranspositionTable transpositionTable, AtomicBoolean stopSignal, AtomicLong helperNodes, SearchOptions options, boolean isMainWorker) {
+        this.bitboard = bitboard;
+        this.transpositionTable = transpositionTable;
+        this.stopSignal = stopSignal;
+        this.helperNodes = helperNodes;
+        this.options = options;
+        this.isMainWorker = isMainWorker;
+        for (int i = 0; i < MAX_PLY; i++) {
+            moveBuffers[i] = new MoveBuffer();
+            movePickers[i] = new MovePicker(bitboard.getMoveGenerator());
+        }
+        bitboard.getMoveGenerator().setSearchContext(searchContext);
+    }
+
+    /**
+     * @return The board this worker searches on
+     */
+    public Bitboard getBitboard() {
+        return bitboard;
+    }
+
+    /**
+     * Iterative deepening: searches depth 1, 2, 3... until the depth, time or node budget runs out.
+     * An iteration cut short by the budget is thrown away, so the move always comes from a fully searched depth.
+     * Helpers start on alternating depths so they spread out over the tree instead of racing the main worker.
+     * The side to move is taken from the board.
+     * @param limits The depth, time and node limits for this search
+     * @param startDepth The first depth to search
+     * @param progressListener Told about every completed iteration, or null
+     * @return The best move and score of the last completed iteration, or null if none completed
+     */
+    public ScoredMove search(SearchLimits limits, int startDepth, Consumer<SearchProgress> progressListener) {
+        long startTime = System.currentTimeMillis();
+        this.rootIsWhite = bitboard.isWhiteToMove();
+        // Helpers have no budget of their own, they run until the main worker raises the stop signal
+        deadline = isMainWorker && limits.getMoveTimeMillis() > 0 ? startTime + limits.getMoveTimeMillis() : Long.MAX_VALUE;
+        this.activeLimits = limits;
+        this.stopped = false;
+        resetStatistics();
+        this.previousPvLength = 0;
+        searchContext.newSearch();
+
+        ScoredMove bestMove = null;
+        for (currentDepth = startDepth; currentDepth <= limits.getMaxDepth(); currentDepth++) {
+            ScoredMove result = aspirationSearch(currentDepth, bestMove == null ? 0 : bestMove.score);
+            if (stopped || result == null) {
+                break;
+            }
+
+            bestMove = result;
+            previousPvLength = pvLength[0];
+            System.arraycopy(pvTable[0], 0, previousPv, 0, previousPvLength);
+            if (progressListener != null) {
+                progressListener.accept(new SearchProgress(currentDepth, result.score, nodes,
+                        System.currentTimeMillis() - startTime, principalVariation()));
+            }
+
+            // A forced mate won't change with more depth
+            if (Math.abs(result.score) > MATE_THRESHOLD) {
+                break;
+            }
+            // The next iteration takes several times longer than this one, don't start what we can't finish
+            long elapsed = System.currentTimeMillis() - startTime;
+            if (deadline != Long.MAX_VALUE && !pondering && elapsed * 2 > limits.getMoveTimeMillis()) {
+                break;
+            }
+        }
+
+        publishedNodes = nodes;
+        return bestMove;
+    }
+
+    /**
+     * Switches the time limit off, or back on from another thread while the search runs. Only the main worker has one.
+     * @param pondering Should the search ignore its time limit?
+     */
+    void setPondering(boolean pondering) {
+        this.pondering = pondering;
+    }
+
+    /**
+     * @return The number of nodes this worker visited in the last search. While it runs, the count may be a little behind.
+     */
+    public long getNodes() {
+        return publishedNodes;
+    }
+
+    /**
+     * Forgets the move ordering history and empties the evaluation caches, for a new game
+     */
+    void clear() {
+        searchContext.clear();
+        evalCache.clear();
+        pawnHashTable.clear();
+    }
+
+    /**
+     * Zeroes the node count and cache counters, which search does itself. The Ai also calls this before starting
+     * any worker, so counts summed while a search starts up never include a helper's previous search.
+     */
+    void resetStatistics() {
+        nodes = 0;
+        publishedNodes = 0;
+        evalCache.resetStatistics();
+        pawnHashTable.resetStatistics();
+    }
+
+    /**
+     * @return This worker's node count and cache hit counts for the last search
+     */
+    public SearchStatistics getStatistics() {
+        return new SearchStatistics(publishedNodes, evalCache.getProbes(), evalCache.getHits(), pawnHashTable.getProbes(), pawnHashTable.getHits());
+    }
+
+    /**
+     * Searches the root with a narrow window around the previous iteration's score, which cuts far more than a
+     * full window. If the score lands outside the window that side is widened and the root searched again.
+     * @param guess The previous iteration's score
+     * @return The best move and its exact score, or null if the search was stopped
+     */
+    private ScoredMove aspirationSearch(int depth, int guess) {
+        if (!options.isAspirationWindows() || depth < ASPIRATION_MIN_DEPTH || Math.abs(guess) > MATE_THRESHOLD) {
+            followPv = true;
+            return searchRoot(depth, -INFINITY, INFINITY);
+        }
+
+        int window = ASPIRATION_WINDOW;
+        int alpha = Math.max(guess - window, -INFINITY);
+        int beta = Math.min(guess + window, INFINITY);
+        while (true) {
+            followPv = true;
+            ScoredMove result = searchRoot(depth, alpha, beta);
+            if (result == null) {
+                return null;
+            }
+
+            if (result.score <= alpha) {
+                alpha = Math.max(alpha - window, -INFINITY);
+            } else if (result.score >= beta) {
+                beta = Math.min(beta + window, INFINITY);
+            } else {
+                return result;
+            }
+            window *= 2;
+        }
+    }
+
+    /**
+     * The root of the principal variation search, the same as negamax but keeping the best move
+     * @return The best move and its score, or null if the search was stopped or there are no legal moves
+     */
+    private ScoredMove searchRoot(int depth, int alpha, int beta) {
+        MoveBuffer moves = moveBuffers[0];
+        pvLength[0] = 0;
+        long key = bitboard.getZobristKey();
+        bitboard.getMoveGenerator().generateMoves(rootIsWhite, moves);
+        moveToFront(moves, TranspositionTable.getMove(transpositionTable.probe(key)));
+        orderPvMove(moves, 0);
+
+        boolean inCheck = bitboard.isKingInCheck(rootIsWhite);
+        int alphaOriginal = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = PackedMove.NONE;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            bitboard.makeMove(move);
+            int score = searchChild(rootIsWhite, move, i, inCheck, depth, alpha, beta, 0);
+            bitboard.undoMove();
+            followPv = false;
+            if (stopped) {
+                return null;
+            }
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+                if (score > alpha) {
+                    alpha = score;
+                    updatePv(0, move);
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (bestMove == PackedMove.NONE) {
+            return null;
+        }
+        storeScore(key, bestMove, bestScore, depth, alphaOriginal, beta, 0);
+        return new ScoredMove(bestMove, bestScore);
+    }
+
+    /**
+     * Counts a node and checks the node and time budgets and the stop signal. The main worker's first iteration
+     * always runs to completion so there is a move to play.
+     * @return Should the search unwind now?
+     */
+    private boolean checkLimits() {
+        nodes++;
+        if ((nodes % TIME_CHECK_INTERVAL) == 0) {
+            publishedNodes = nodes;
+            if (!isMainWorker) {
+                helperNodes.addAndGet(TIME_CHECK_INTERVAL);
+            }
+        }
+        if ((currentDepth > 1 || !isMainWorker) && !stopped) {
+            if (isMainWorker && activeLimits.getMaxNodes() > 0 && nodes + helperNodes.get() >= activeLimits.getMaxNodes()) {
+                stopped = true;
+            } else if ((nodes % TIME_CHECK_INTERVAL) == 0 && (stopSignal.get() || (System.currentTimeMillis() >= deadline && !pondering))) {
+                stopped = true;
+            }
+        }
+        return stopped;
+    }
+
+    /**
+     * Negamax principal variation search
+     * @param isWhite The side to move
+     * @param allowNullMove False straight after a null move, two in a row prove nothing
+     * @return The score from the side to move's point of view
+     */
+    private int negamax(boolean isWhite, int depth, int alpha, int beta, int ply, boolean allowNullMove) {
+        pvLength[ply] = ply;
+        if (checkLimits()) {
+            return 0;
+        }
+
+        boolean inCheck = bitboard.isKingInCheck(isWhite);
+        if (inCheck && options.isCheckExtensions() && ply < 2 * currentDepth) {
+            // Don't stop the search in the middle of answering a check. The ply cap stops a string of checks
+            // from extending forever.
+            depth++;
+        }
+        if (depth <= 0 || ply >= MAX_PLY - 1) {
+            return quiesce(isWhite, alpha, beta, ply);
+        }
+
+        boolean pvNode = beta - alpha > 1;
+        long key = bitboard.getZobristKey();
+        long entry = transpositionTable.probe(key);
+        if (!pvNode) {
+            // Cutting off a PV node would cut its line short, so only null window nodes trust the table
+            int tableScore = probeScore(entry, depth, alpha, beta, ply);
+            if (tableScore != NO_CUTOFF) {
+                return tableScore;
+            }
+        }
+
+        if (options.isNullMovePruning() && allowNullMove && !pvNode && !inCheck
+                && depth >= NULL_MOVE_MIN_DEPTH && hasPiecesBesidesPawns(isWhite)) {
+            // If passing still leaves the opponent unable to get below beta, a real move almost certainly will too.
+            // Zugzwang breaks this, which is why it isn't tried with only pawns left.
+            int reduction = depth > 6 ? 3 : 2;
+            bitboard.makeNullMove();
+            int score = -negamax(!isWhite, depth - 1 - reduction, -beta, -beta + 1, ply + 1, false);
+            bitboard.undoNullMove();
+            if (stopped) {
+                return 0;
+            }
+            if (score >= beta) {
+                // A mate found after passing isn't a real mate
+                return score > MATE_THRESHOLD ? beta : score;
+            }
+        }
+
+        int firstMove = pvMove(ply, TranspositionTable.getMove(entry));
+        MovePicker movePicker = movePickers[ply];
+        movePicker.init(isWhite, firstMove, searchContext.getKiller(ply, 0), searchContext.getKiller(ply, 1));
+        int previousMove = bitboard.getLastMove();
+
+        int alphaOriginal = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = PackedMove.NONE;
+        int movesSearched = 0;
+        int quietCount = 0;
+        for (int move = movePicker.next(); move != PackedMove.NONE; move = movePicker.next()) {
+            if (followPv && move != firstMove) {
+                // The previous iteration's line wasn't legal here after all
+                followPv = false;
+            }
+            if (options.isSeePruning() && !pvNode && !inCheck && depth <= SEE_PRUNING_MAX_DEPTH && movesSearched > 0
+                    && PackedMove.isCapture(move) && !bitboard.seeGE(move, -SEE_PRUNING_MARGIN * depth)) {
+                // Near the leaves a capture that loses this much material won't be won back in time
+                continue;
+            }
+            bitboard.makeMove(move);
+            int score = searchChild(isWhite, move, movesSearched++, inCheck, depth, alpha, beta, ply);
+            bitboard.undoMove();
+            followPv = false;
+            if (stopped) {
+                return 0;
+            }
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+                if (score > alpha) {
+                    alpha = score;
+                    updatePv(ply, move);
+                    if (alpha >= beta) {
+                        if (isQuiet(move)) {
+                            searchContext.updateCutoff(isWhite, ply, move, previousMove, depth, quietsTried[ply], quietCount);
+                        }
+                        break;
+                    }
+                }
+            }
+            if (isQuiet(move)) {
+                quietsTried[ply][quietCount++] = move;
+            }
+        }
+
+        if (movesSearched == 0) {
+            // Checkmate or stalemate, sooner mates score further from 0
+            return inCheck ? -MATE_SCORE + ply : 0;
+        }
+
+        storeScore(key, bestMove, bestScore, depth, alphaOriginal, beta, ply);
+        return bestScore;
+    }
+
+    /**
+     * Searches the position after a move, already made on the board. The first move gets the full window. Later moves
+     * are expected to be worse, so they get a null window that only proves they don't beat alpha, and late quiet moves
+     * are also reduced. A move that does beat alpha is searched again with the full window and depth.
+     * @param isWhite The side that made the move
+     * @param moveIndex The move's position in the move order
+     * @param inCheck Was the side that moved in check?
+     * @return The score from the point of view of the side that moved
+     */
+    private int searchChild(boolean isWhite, int move, int moveIndex, boolean inCheck, int depth, int alpha, int beta, int ply) {
+        if (moveIndex == 0) {
+            return -negamax(!isWhite, depth - 1, -beta, -alpha, ply + 1, true);
+        }
+
+        int reduction = 0;
+        if (options.isLateMoveReductions() && depth >= LMR_MIN_DEPTH && moveIndex >= LMR_MIN_MOVE_INDEX && !inCheck
+                && !PackedMove.isCapture(move) && !PackedMove.isPromotion(move) && !bitboard.isKingInCheck(!isWhite)) {
+            reduction = moveIndex >= 2 * LMR_MIN_MOVE_INDEX ? 2 : 1;
+        }
+        int windowBeta = options.isPrincipalVariationSearch() ? alpha + 1 : beta;
+
+        int score = -negamax(!isWhite, depth - 1 - reduction, -windowBeta, -alpha, ply + 1, true);
+        if (score > alpha && (reduction > 0 || windowBeta != beta)) {
+            score = -negamax(!isWhite, depth - 1, -beta, -alpha, ply + 1, true);
+        }
+        return score;
+    }
+
+    private boolean hasPiecesBesidesPawns(boolean isWhite) {
+        long ownPieces = isWhite ? bitboard.getWhitePieces() : bitboard.getBlackPieces();
+        long pawnsAndKing = isWhite ? bitboard.getWhitePawns() | bitboard.getWhiteKing() : bitboard.getBlackPawns() | bitboard.getBlackKing();
+        return (ownPieces & ~pawnsAndKing) != 0;
+    }
+
+    /**
+     * The static evaluation, from the eval cache when the position was evaluated before
+     * @param isWhite The side to move
+     * @return The score from the side to move's point of view
+     */
+    private int evaluate(boolean isWhite) {
+        if (!options.isEvalCache()) {
+            return Evaluator.evaluate(bitboard, isWhite, pawnHashTable);
+        }
+        long key = bitboard.getZobristKey()
+                ^ (bitboard.isWhiteCastled() ? WHITE_CASTLED_KEY : 0)
+                ^ (bitboard.isBlackCastled() ? BLACK_CASTLED_KEY : 0);
+        int score = evalCache.probe(key);
+        if (score == EvalCache.MISS) {
+            score = Evaluator.evaluate(bitboard, true, pawnHashTable);
+            evalCache.store(key, score);
+        }
+        return isWhite ? score : -score;
+    }
+
+    /**
+     * Quiescence search: keeps searching captures past the nominal depth until the position is quiet,
+     * so a leaf is never scored in the middle of an exchange. In check every evasion is searched instead,
+     * which also finds mates at the leaves.
+     * @param isWhite The side to move
+     * @return The score from the side to move's point of view
+     */
+    private int quiesce(boolean isWhite, int alpha, int beta, int ply) {
+        pvLength[ply] = ply;
+        if (checkLimits()) {
+            return 0;
+        }
+        if (ply >= MAX_PLY - 1) {
+            return evaluate(isWhite);
+        }
+
+        MoveBuffer moves = moveBuffers[ply];
+        boolean inCheck = bitboard.isKingInCheck(isWhite);
+        int standPat = 0;
+        int bestScore;
+        if (inCheck) {
+            bitboard.getMoveGenerator().generateMoves(isWhite, moves);
+            if (moves.isEmpty()) {
+                return -MATE_SCORE + ply;
+            }
+            bestScore = -INFINITY;
+        } else {
+            // Standing pat: the side to move can usually do at least as well as the static score by not capturing
+            standPat = evaluate(isWhite);
+            if (standPat >= beta) {
+                return standPat;
+            }
+            alpha = Math.max(alpha, standPat);
+            bestScore = standPat;
+            bitboard.getMoveGenerator().generateCaptures(isWhite, moves);
+        }
+
+        for (int i = 0; i < moves.size(); i++) {
+            if (!inCheck) {
+                // Evasions come fully sorted, captures are sorted as far as they're needed
+                moves.pickBest(i);
+            }
+            int move = moves.get(i);
+            if (!inCheck && !PackedMove.isPromotion(move) && standPat + capturedValue(move) + DELTA_MARGIN <= alpha) {
+                // Delta pruning: even winning this piece for free can't raise alpha
+                continue;
+            }
+            if (!inCheck && options.isSeePruning() && !bitboard.seeGE(move, 0)) {
+                // A capture that loses material can't do better than standing pat
+                continue;
+            }
+
+            bitboard.makeMove(move);
+            int score = -quiesce(!isWhite, -beta, -alpha, ply + 1);
+            bitboard.undoMove();
+            if (stopped) {
+                return 0;
+            }
+
+            if (score > bestScore) {
+                bestScore = score;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        return bestScore;
+    }
+
+    private int capturedValue(int move) {
+        if (PackedMove.isEnPassant(move)) {
+            return Evaluator.pieceValue(PieceType.WHITE_PAWN);
+        }
+        PieceType captured = bitboard.getPieceAtSquare(PackedMove.to(move));
+        return captured == null ? 0 : Evaluator.pieceValue(captured);
+    }
+
+    /**
+     * Checks whether a transposition table entry already decides this node
+     * @return The stored score if it is deep enough and falls outside the window, otherwise NO_CUTOFF
+     */
+    private int probeScore(long entry, int depth, int alpha, int beta, int ply) {
+        if (entry == 0 || TranspositionTable.getDepth(entry) < depth) {
+            return NO_CUTOFF;
+        }
+
+        int score = TranspositionTable.getScore(entry);
+        // Mate scores are stored relative to the stored position, convert back to distance from the root
+        if (score > MATE_THRESHOLD) score -= ply;
+        else if (score < -MATE_THRESHOLD) score += ply;
+
+        int bound = TranspositionTable.getBound(entry);
+        if (bound == TranspositionTable.EXACT
+                || bound == TranspositionTable.LOWER_BOUND && score >= beta
+                || bound == TranspositionTable.UPPER_BOUND && score <= alpha) {
+            return score;
+        }
+        return NO_CUTOFF;
+    }
+
+    private void storeScore(long key, int bestMove, int score, int depth, int alpha, int beta, int ply) {
+        int bound = score <= alpha ? TranspositionTable.UPPER_BOUND
+                : score >= beta ? TranspositionTable.LOWER_BOUND
+                : TranspositionTable.EXACT;
+
+        if (score > MATE_THRESHOLD) score += ply;
+        else if (score < -MATE_THRESHOLD) score -= ply;
+
+        transpositionTable.store(key, bestMove, score, depth, bound);
+    }
+
+    /**
+     * @return The last completed iteration's best line as moves, alternating sides from the root
+     */
+    List<Move> principalVariation() {
+        List<Move> line = new ArrayList<>(previousPvLength);
+        boolean isWhite = rootIsWhite;
+        for (int i = 0; i < previousPvLength; i++) {
+            line.add(new Move(previousPv[i], isWhite));
+            isWhite = !isWhite;
+        }
+        return line;
+    }
+
+    /**
+     * Records a new best move at a ply, followed by the best line found below it
+     */
+    private void updatePv(int ply, int move) {
+        pvTable[ply][ply] = move;
+        int childLength = ply + 1 < MAX_PLY ? pvLength[ply + 1] : ply + 1;
+        for (int i = ply + 1; i < childLength; i++) {
+            pvTable[ply][i] = pvTable[ply + 1][i];
+        }
+        pvLength[ply] = Math.max(childLength, ply + 1);
+    }
+
+    /**
+     * While the search is still walking down the previous iteration's best line, tries that line's move first.
+     * Only the first move searched at each ply can continue the line.
+     */
+    private void orderPvMove(MoveBuffer moves, int ply) {
+        if (!followPv) return;
+        if (ply < previousPvLength) {
+            moveToFront(moves, previousPv[ply]);
+            followPv = moves.get(0) == previousPv[ply];
+        } else {
+            followPv = false;
+        }
+    }
+
+    /**
+     * Picks the move a node tries first: the previous iteration's move while still on its best line,
+     * otherwise the transposition table's move
+     */
+    private int pvMove(int ply, int tableMove) {
+        if (followPv) {
+            if (ply < previousPvLength) {
+                return previousPv[ply];
+            }
+            followPv = false;
+        }
+        return tableMove;
+    }
+
+    private static boolean isQuiet(int move) {
+        return !PackedMove.isCapture(move) && !PackedMove.isPromotion(move);
+    }
+
+    /**
+     * Moves the given move, usually the best move remembered by the transposition table, to the front of the buffer
+     */
+    private static void moveToFront(MoveBuffer moves, int move) {
+        if (move == PackedMove.NONE) return;
+        for (int i = 0; i < moves.size(); i++) {
+            if (moves.get(i) == move) {
+                for (int j = i; j > 0; j--) {
+                    moves.swap(j, j - 1);
+                }
+                return;
+            }
+        }
+    }
+
+
+    public static class ScoredMove {
+        final int score;
+        final int move;
+
+        public ScoredMove(int move, int score) {
+            this.move = move;
+            this.score = score;
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.github.jaceg18.chess.engine;
+
+import java.util.Arrays;
+
+/**
+ * A fixed size hash table of search results keyed by Zobrist key.
+ * Each entry is two longs: the data word (best move, score, depth, bound and age) and the key XORed with the data.
+ * A reader only trusts an entry if XORing the two words gives back its own key, so an entry torn by two threads
+ * writing at once is simply treated as a miss. That lets several search threads share the table without locks.
+ */
+public class TranspositionTable {
+    public static final int EXACT = 1;
+    public static final int LOWER_BOUND = 2;
+    public static final int UPPER_BOUND = 3;
+
+    private static final int ENTRY_SIZE_BYTES = 16;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int indexMask;
+    private int age;
+
+    /**
+     * @param sizeMb The memory budget in megabytes, rounded down to a power of two number of entries
+     */
+    public TranspositionTable(int sizeMb) {
+        long requestedEntries = Math.max(1L, (long) sizeMb * 1024 * 1024 / ENTRY_SIZE_BYTES);
+        int entries = (int) Math.min(Long.highestOneBit(requestedEntries), 1 << 30);
+        this.keys = new long[entries];
+        this.data = new long[entries];
+        this.indexMask = entries - 1;
+    }
+
+    /**
+     * Looks up a position
+     * @param key The position's Zobrist key
+     * @return The entry's data word, or 0 if the position isn't stored
+     */
+    public long probe(long key) {
+        int index = (int) key & indexMask;
+        long entryData = data[index];
+        return (keys[index] ^ entryData) == key ? entryData : 0L;
+    }
+
+    /**
+     * Stores a search result. Results from an older search are always replaced, otherwise the deeper or exact result wins.
+     * @param key The position's Zobrist key
+     * @param move The best move found, or 0 if none
+     * @param score The score, already adjusted so mate scores are relative to this position
+     * @param depth The remaining depth the position was searched to
+     * @param bound EXACT, LOWER_BOUND or UPPER_BOUND
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        int index = (int) key & indexMask;
+        long oldData = data[index];
+        boolean sameKey = (keys[index] ^ oldData) == key;
+
+        if (oldData != 0 && getAge(oldData) == age && depth < getDepth(oldData) && bound != EXACT) {
+            return;
+        }
+        if (move == 0 && sameKey) {
+            // Keep the old best move, it's still the best guess for ordering
+            move = getMove(oldData);
+        }
+
+        long newData = (move & 0xFFFFL)
+                | ((score & 0xFFFFFFFFL) << 16)
+                | ((long) (Math.max(0, Math.min(depth, 255))) << 48)
+                | ((long) bound << 56)
+                | ((long) age << 58);
+        data[index] = newData;
+        keys[index] = key ^ newData;
+    }
+
+    /**
+     * Marks the start of a new search so entries left from earlier searches get replaced first
+     */
+    public void newSearch() {
+        age = (age + 1) & 0x3F;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(data, 0L);
+    }
+
+    public static int getMove(long entryData) {
+        return (int) (entryData & 0xFFFF);
+    }
+
+    public static int getScore(long entryData) {
+        return (int) (entryData >>> 16);
+    }
+
+    public static int getDepth(long entryData) {
+        return (int) ((entryData >>> 48) & 0xFF);
+    }
+
+    public static int getBound(long entryData) {
+        return (int) ((entryData >>> 56) & 0x3);
+    }
+
+    private static int getAge(long entryData) {
+        return (int) (entryData >>> 58);
+    }
+}
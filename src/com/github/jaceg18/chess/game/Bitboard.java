@@ -1,372 +1,519 @@
 package com.github.jaceg18.chess.game;
 
+import com.github.jaceg18.chess.game.attacks.AttackTables;
+import com.github.jaceg18.chess.game.attacks.MagicBitboards;
 import com.github.jaceg18.chess.game.moves.Move;
 import com.github.jaceg18.chess.game.moves.MoveGenerator;
 import com.github.jaceg18.chess.game.moves.MoveLog;
+import com.github.jaceg18.chess.game.moves.PackedMove;
 import com.github.jaceg18.chess.game.moves.strategy.OrderingStrategy;
 import com.github.jaceg18.chess.game.pieces.PieceType;
-import com.github.jaceg18.chess.util.BitboardUtils;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 public class Bitboard {
-    // SWITCH THIS TO ENUM MAP
-    private long whitePawns;
-    private long whiteKnights;
-    private long whiteBishops;
-    private long whiteRooks;
-    private long whiteQueens;
-    private long whiteKing;
-    private long blackPawns;
-    private long blackKnights;
-    private long blackBishops;
-    private long blackRooks;
-    private long blackQueens;
-    private long blackKing;
+    public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private static final PieceType[] PIECE_TYPES = PieceType.values();
+    private static final int INITIAL_HISTORY_CAPACITY = 512;
+
+    // Castling rights that survive a move touching each square; moving a king or rook, or capturing a rook, clears rights
+    private static final int[] CASTLING_RIGHTS_MASK = new int[64];
+
+    // Piece values for static exchange evaluation, indexed by ordinal. The king is worth more than everything else
+    // together, so an exchange never trades it
+    private static final int[] SEE_VALUES = {
+            100, 300, 300, 500, 900, 20000,
+            100, 300, 300, 500, 900, 20000
+    };
+
+    static {
+        Arrays.fill(CASTLING_RIGHTS_MASK, 0b1111);
+        CASTLING_RIGHTS_MASK[56] = 0b0111;
+        CASTLING_RIGHTS_MASK[63] = 0b1011;
+        CASTLING_RIGHTS_MASK[60] = 0b0011;
+        CASTLING_RIGHTS_MASK[0] = 0b1110;
+        CASTLING_RIGHTS_MASK[7] = 0b1101;
+        CASTLING_RIGHTS_MASK[4] = 0b1100;
+    }
+
+    // One bitboard per PieceType, indexed by ordinal
+    private final long[] pieceBitboards = new long[PIECE_TYPES.length];
+    // The piece on every square, null when empty
+    private final PieceType[] squares = new PieceType[64];
     private long whitePieces;
     private long blackPieces;
     private long occupiedSquares;
     private int castlingRights = 0b1111;
+    private int enPassantSquare = -1;
+    private boolean whiteToMove = true;
+    // Half moves since the last capture or pawn move, for the fifty move rule
+    private int halfmoveClock = 0;
+    // Starts at 1 and goes up after each of Black's moves
+    private int fullmoveNumber = 1;
+    // Zobrist key of the current position, kept up to date by every change to the board
+    private long zobristKey;
+    // Zobrist key of the pawns alone, for caching pawn structure terms
+    private long pawnKey;
+    // Material and piece-square value of every piece on the board, from White's side, kept up to date the same way
+    private int middlegameScore;
+    private int endgameScore;
+    // Sum of the pieces' phase weights, PieceSquareTables.MAX_PHASE at the start and falling as pieces come off
+    private int phase;
     private final MoveGenerator moveGenerator;
-    private List<Move> moveList = new ArrayList<>();
-    private List<MoveLog> moveLogs = new ArrayList<>();
+    private MoveLog[] moveLogs = new MoveLog[INITIAL_HISTORY_CAPACITY];
+    private int moveLogCount = 0;
     private boolean whiteCastled = false;
     private boolean blackCastled = false;
+    // Scratch space for see, one entry per capture in the exchange
+    private final int[] seeGains = new int[32];
 
     /**
      * Constructor that creates a bitboard for our chess game
      */
     public Bitboard(OrderingStrategy moveOrderingStrategy) {
-        setupBoard();
-        this.moveGenerator = new MoveGenerator(this, moveOrderingStrategy);
+        this(START_FEN, moveOrderingStrategy);
     }
 
     /**
-     * Sets up default chess position
+     * Creates a board set up from a FEN string. The move counters may be left off, the other four fields are required.
+     * @param fen The position in Forsyth-Edwards Notation
+     * @throws IllegalArgumentException If the FEN can't be parsed
      */
-    private void setupBoard() {
-        whitePawns = 0x00FF000000000000L;
-        whiteKnights = 0x4200000000000000L;
-        whiteBishops = 0x2400000000000000L;
-        whiteRooks = 0x8100000000000000L;
-        whiteQueens = 0x0800000000000000L;
-        whiteKing = 0x1000000000000000L;
-
-        blackPawns = 0x000000000000FF00L;
-        blackKnights = 0x0000000000000042L;
-        blackBishops = 0x0000000000000024L;
-        blackRooks = 0x0000000000000081L;
-        blackQueens = 0x0000000000000008L;
-        blackKing = 0x0000000000000010L;
+    public Bitboard(String fen, OrderingStrategy moveOrderingStrategy) {
+        for (int i = 0; i < moveLogs.length; i++) {
+            moveLogs[i] = new MoveLog();
+        }
+        setupBoard(fen);
+        this.moveGenerator = new MoveGenerator(this, moveOrderingStrategy);
     }
 
     /**
-     * Moves the piece
-     *
-     * @param move    The move
-     * @param isWhite Is the piece we are moving white?
+     * Creates an independent copy of another board's position, for a search thread to make and undo moves on.
+     * The copy has no move history, so it can't undo past the copied position.
      */
-    public void movePiece(Move move, boolean isWhite) {
-        PieceType movedPiece = getPieceAtSquare((int) move.getFrom(), isWhite);
-        PieceType capturedPiece = getPieceAtSquare((int) move.getTo(), !isWhite);
-        if (movedPiece == null) {
-            throw new IllegalStateException("No piece found at move source: " + move.getFrom());
+    public Bitboard(Bitboard other) {
+        for (int i = 0; i < moveLogs.length; i++) {
+            moveLogs[i] = new MoveLog();
         }
+        copyFrom(other);
+        this.moveGenerator = new MoveGenerator(this, other.moveGenerator.getOrderingStrategy());
+    }
 
+    /**
+     * Overwrites this board's position with another's and clears the move history
+     * @param other The board to copy
+     */
+    public void copyFrom(Bitboard other) {
+        System.arraycopy(other.pieceBitboards, 0, pieceBitboards, 0, pieceBitboards.length);
+        System.arraycopy(other.squares, 0, squares, 0, squares.length);
+        whitePieces = other.whitePieces;
+        blackPieces = other.blackPieces;
+        occupiedSquares = other.occupiedSquares;
+        castlingRights = other.castlingRights;
+        enPassantSquare = other.enPassantSquare;
+        whiteToMove = other.whiteToMove;
+        halfmoveClock = other.halfmoveClock;
+        fullmoveNumber = other.fullmoveNumber;
+        zobristKey = other.zobristKey;
+        pawnKey = other.pawnKey;
+        middlegameScore = other.middlegameScore;
+        endgameScore = other.endgameScore;
+        phase = other.phase;
+        whiteCastled = other.whiteCastled;
+        blackCastled = other.blackCastled;
+        moveLogCount = 0;
+    }
 
-        moveLogs.add(new MoveLog(move.getFrom(), move.getTo(), movedPiece, capturedPiece, castlingRights));
-        checkCastleRights(move, movedPiece, capturedPiece);
+    /**
+     * Replaces this board's position with the one a FEN string describes and clears the move history.
+     * The board is left unchanged if the FEN can't be parsed.
+     * @param fen The position in Forsyth-Edwards Notation
+     * @throws IllegalArgumentException If the FEN can't be parsed, lacks a king or has an impossible en passant square
+     */
+    public void setPosition(String fen) {
+        copyFrom(new Bitboard(fen, moveGenerator.getOrderingStrategy()));
+    }
 
-        if (Math.abs(move.getFrom() - move.getTo()) == 2 && movedPiece.name().toLowerCase().contains("king")) {
-            boolean kingSide = move.getTo() > move.getFrom();
-            moveRookForCastling(isWhite, kingSide);
-            if (isWhite) whiteCastled = true;
-            else blackCastled = true;
+    /**
+     * Sets up the position described by a FEN string on an empty board
+     */
+    private void setupBoard(String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        if (fields.length < 4) {
+            throw new IllegalArgumentException("FEN needs at least four fields: " + fen);
         }
 
+        String[] rows = fields[0].split("/");
+        if (rows.length != 8) {
+            throw new IllegalArgumentException("FEN needs eight ranks: " + fen);
+        }
+        // The first rank listed is rank 8, which is row 0 of the board
+        for (int row = 0; row < 8; row++) {
+            int file = 0;
+            for (char c : rows[row].toCharArray()) {
+                if (c >= '1' && c <= '8') {
+                    file += c - '0';
+                } else {
+                    int kind = "pnbrqk".indexOf(Character.toLowerCase(c));
+                    if (kind == -1 || file > 7) {
+                        throw new IllegalArgumentException("Bad rank '" + rows[row] + "' in FEN: " + fen);
+                    }
+                    addPiece(PieceType.values()[Character.isUpperCase(c) ? kind : kind + 6], row * 8 + file++);
+                }
+            }
+            if (file != 8) {
+                throw new IllegalArgumentException("Rank '" + rows[row] + "' doesn't have eight squares in FEN: " + fen);
+            }
+        }
 
-        long fromMask = 1L << move.getFrom();
-        long toMask = 1L << move.getTo();
-        updateBitboards(movedPiece, fromMask, toMask, isWhite);
-        clearOpponentPieceFromSquare(toMask, !isWhite);
+        // The search and move generator assume both kings are on the board
+        if (Long.bitCount(getWhiteKing()) != 1 || Long.bitCount(getBlackKing()) != 1) {
+            throw new IllegalArgumentException("FEN needs exactly one king for each side: " + fen);
+        }
 
+        if (!fields[1].equals("w") && !fields[1].equals("b")) {
+            throw new IllegalArgumentException("Bad side to move in FEN: " + fen);
+        }
+        whiteToMove = fields[1].equals("w");
+
+        castlingRights = 0;
+        if (!fields[2].equals("-")) {
+            for (char c : fields[2].toCharArray()) {
+                int right = "qkKQ".indexOf(c);
+                if (right == -1) {
+                    throw new IllegalArgumentException("Bad castling rights in FEN: " + fen);
+                }
+                // q, k, K and Q are bits 0 to 3
+                castlingRights |= 1 << right;
+            }
+        }
+        // A right is only kept if its king and rook are still on their starting squares, as they must be for it to be real
+        if (squares[60] != PieceType.WHITE_KING) castlingRights &= 0b0011;
+        if (squares[63] != PieceType.WHITE_ROOK) castlingRights &= ~0b0100;
+        if (squares[56] != PieceType.WHITE_ROOK) castlingRights &= ~0b1000;
+        if (squares[4] != PieceType.BLACK_KING) castlingRights &= 0b1100;
+        if (squares[7] != PieceType.BLACK_ROOK) castlingRights &= ~0b0010;
+        if (squares[0] != PieceType.BLACK_ROOK) castlingRights &= ~0b0001;
+
+        enPassantSquare = fields[3].equals("-") ? -1 : algebraicToSquare(fields[3], fen);
+        // The square a pawn just skipped is on rank 6 when White is to move, rank 3 when Black is
+        if (enPassantSquare != -1 && enPassantSquare / 8 != (whiteToMove ? 2 : 5)) {
+            throw new IllegalArgumentException("En passant square " + fields[3] + " is on the wrong rank in FEN: " + fen);
+        }
 
-        if (movedPiece == PieceType.WHITE_PAWN && (move.getTo() >= 0 && move.getTo() <= 7)) {
-            whitePawns &= ~toMask;
-            whiteQueens |= toMask;
-        } else if (movedPiece == PieceType.BLACK_PAWN && (move.getTo() >= 56 && move.getTo() <= 63)) {
-            blackPawns &= ~toMask;
-            blackQueens |= toMask;
+        // The move counters are often left off, a missing counter takes its starting value
+        try {
+            halfmoveClock = fields.length > 4 ? Integer.parseInt(fields[4]) : 0;
+            fullmoveNumber = fields.length > 5 ? Integer.parseInt(fields[5]) : 1;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad move counter in FEN: " + fen, e);
+        }
+        if (halfmoveClock < 0 || fullmoveNumber < 1) {
+            throw new IllegalArgumentException("Bad move counter in FEN: " + fen);
         }
 
-        updateCompositeBitboards();
+        zobristKey = computeZobristKey();
     }
 
-    public int getTotalPieceCount() {
-        int pieceCount = Long.bitCount(whitePawns) + Long.bitCount(whiteKnights) + Long.bitCount(whiteBishops) +
-                Long.bitCount(whiteRooks) + Long.bitCount(whiteQueens) + Long.bitCount(whiteKing) +
-                Long.bitCount(blackPawns) + Long.bitCount(blackKnights) + Long.bitCount(blackBishops) +
-                Long.bitCount(blackRooks) + Long.bitCount(blackQueens) + Long.bitCount(blackKing);
-        return pieceCount;
+    private static int algebraicToSquare(String square, String fen) {
+        if (square.length() != 2 || square.charAt(0) < 'a' || square.charAt(0) > 'h'
+                || square.charAt(1) < '1' || square.charAt(1) > '8') {
+            throw new IllegalArgumentException("Bad square '" + square + "' in FEN: " + fen);
+        }
+        return (8 - (square.charAt(1) - '0')) * 8 + (square.charAt(0) - 'a');
     }
 
-
-
-    private void moveRookForCastling(boolean isWhite, boolean kingSide) {
-        long fromMask, toMask;
-        if (isWhite) {
-            if (kingSide) {
-                fromMask = 1L << 63;
-                toMask = 1L << 61;
-            } else {
-                fromMask = 1L << 56;
-                toMask = 1L << 59;
+    /**
+     * @return The current position in Forsyth-Edwards Notation, with all six fields
+     */
+    public String toFen() {
+        StringBuilder fen = new StringBuilder();
+        for (int row = 0; row < 8; row++) {
+            int emptySquares = 0;
+            for (int file = 0; file < 8; file++) {
+                PieceType piece = squares[row * 8 + file];
+                if (piece == null) {
+                    emptySquares++;
+                    continue;
+                }
+                if (emptySquares > 0) {
+                    fen.append(emptySquares);
+                    emptySquares = 0;
+                }
+                char symbol = "pnbrqk".charAt(piece.ordinal() % 6);
+                fen.append(isPieceWhite(piece) ? Character.toUpperCase(symbol) : symbol);
             }
-        } else {
-            if (kingSide) {
-                fromMask = 1L << 7;
-                toMask = 1L << 5;
-            } else {
-                fromMask = 1L;
-                toMask = 1L << 3;
+            if (emptySquares > 0) {
+                fen.append(emptySquares);
+            }
+            if (row < 7) {
+                fen.append('/');
             }
         }
 
-        updateBitboards(isWhite ? PieceType.WHITE_ROOK : PieceType.BLACK_ROOK, fromMask, toMask, isWhite);
+        fen.append(whiteToMove ? " w " : " b ");
+        if (castlingRights == 0) {
+            fen.append('-');
+        } else {
+            if ((castlingRights & 0b0100) != 0) fen.append('K');
+            if ((castlingRights & 0b1000) != 0) fen.append('Q');
+            if ((castlingRights & 0b0010) != 0) fen.append('k');
+            if ((castlingRights & 0b0001) != 0) fen.append('q');
+        }
+        fen.append(' ').append(enPassantSquare == -1 ? "-" : PackedMove.squareToAlgebraic(enPassantSquare));
+        fen.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+        return fen.toString();
     }
 
-    private void checkCastleRights(Move move, PieceType movedPiece, PieceType capturedPiece) {
-        if (movedPiece == PieceType.WHITE_KING) {
-            castlingRights &= 0b0011;
-        } else if (movedPiece == PieceType.BLACK_KING) {
-            castlingRights &= 0b1100;
+    /**
+     * Moves the piece
+     *
+     * @param move    The move
+     * @param isWhite Is the piece we are moving white?
+     */
+    public void movePiece(Move move, boolean isWhite) {
+        PieceType movedPiece = squares[(int) move.getFrom()];
+        if (movedPiece == null || isPieceWhite(movedPiece) != isWhite) {
+            throw new IllegalStateException("No piece found at move source: " + move.getFrom());
         }
+        makeMove(move.getEncoded());
+    }
 
-
-        if (movedPiece == PieceType.WHITE_ROOK) {
-            if (move.getFrom() == 63) {
-                castlingRights &= 0b1011;
-            } else if (move.getFrom() == 56) {
-                castlingRights &= 0b0111;
-            }
-        } else if (movedPiece == PieceType.BLACK_ROOK) {
-            if (move.getFrom() == 7) {
-                castlingRights &= 0b1101; // 0b1110
-            } else if (move.getFrom() == 0) {
-                castlingRights &= 0b1110; // 0b1101
-            }
+    /**
+     * Makes a packed move. The move must be legal in the current position, as produced by the move generator.
+     *
+     * @param move The packed move
+     */
+    public void makeMove(int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        int flags = PackedMove.flags(move);
+        PieceType movedPiece = squares[from];
+        boolean isWhite = isPieceWhite(movedPiece);
+
+        // The pawn taken en passant sits beside the target square, one row back from it
+        int captureSquare = flags == PackedMove.EN_PASSANT ? to + (isWhite ? 8 : -8) : to;
+        PieceType capturedPiece = squares[captureSquare];
+
+        if (moveLogCount == moveLogs.length) {
+            growMoveLogs();
         }
+        moveLogs[moveLogCount++].set(move, movedPiece, capturedPiece, castlingRights, enPassantSquare, zobristKey, halfmoveClock);
 
-        if (capturedPiece == PieceType.WHITE_ROOK) {
-            if (move.getTo() == 63) {
-                castlingRights &= 0b1011;
-            } else if (move.getTo() == 56) {
-                castlingRights &= 0b0111;
-            }
-        } else if (capturedPiece == PieceType.BLACK_ROOK) {
-            if (move.getTo() == 7) {
-                castlingRights &= 0b1101; // 0b1110
-            } else if (move.getTo() == 0) {
-                castlingRights &= 0b1110; // 0b1101
-            }
+        if (capturedPiece != null) {
+            removePiece(capturedPiece, captureSquare);
         }
-    }
+        removePiece(movedPiece, from);
+        addPiece(PackedMove.isPromotion(move) ? PackedMove.promotionPiece(move, isWhite) : movedPiece, to);
 
-    public void undoMove() {
-        if (moveLogs.isEmpty()) return;
-
-        MoveLog lastMove = moveLogs.remove(moveLogs.size() - 1);
-
-        boolean isUndoingPromotion = false;
-        if ((lastMove.movedPiece == PieceType.WHITE_PAWN && (lastMove.toPosition >= 0 && lastMove.toPosition <= 7)) ||
-                (lastMove.movedPiece == PieceType.BLACK_PAWN && (lastMove.toPosition >= 56 && lastMove.toPosition <= 63))) {
-            isUndoingPromotion = true;
-            // Remove the queen from the promotion square
-            if (lastMove.movedPiece == PieceType.WHITE_PAWN) {
-                whiteQueens &= ~(1L << lastMove.toPosition);
-            } else {
-                blackQueens &= ~(1L << lastMove.toPosition);
-            }
+        if (flags == PackedMove.KING_CASTLE || flags == PackedMove.QUEEN_CASTLE) {
+            moveRookForCastling(isWhite, flags == PackedMove.KING_CASTLE, false);
+            if (isWhite) whiteCastled = true;
+            else blackCastled = true;
         }
 
-        updateBitboards(lastMove.movedPiece, 1L << lastMove.toPosition, 1L << lastMove.fromPosition, isPieceWhite(lastMove.movedPiece));
-
-        if (isUndoingPromotion) {
-            // Place the pawn back to its original position
-            if (lastMove.movedPiece == PieceType.WHITE_PAWN) {
-                whitePawns |= 1L << lastMove.fromPosition;
-            } else {
-                blackPawns |= 1L << lastMove.fromPosition;
-            }
+        // Pieces are hashed as they are added and removed, the rest of the state is swapped here
+        zobristKey ^= Zobrist.enPassantKey(enPassantSquare) ^ Zobrist.castlingKey(castlingRights);
+        enPassantSquare = flags == PackedMove.DOUBLE_PAWN_PUSH ? (from + to) / 2 : -1;
+        castlingRights &= CASTLING_RIGHTS_MASK[from] & CASTLING_RIGHTS_MASK[to];
+        zobristKey ^= Zobrist.enPassantKey(enPassantSquare) ^ Zobrist.castlingKey(castlingRights) ^ Zobrist.blackToMoveKey();
+        whiteToMove = !whiteToMove;
+
+        boolean isPawnMove = movedPiece == PieceType.WHITE_PAWN || movedPiece == PieceType.BLACK_PAWN;
+        halfmoveClock = isPawnMove || capturedPiece != null ? 0 : halfmoveClock + 1;
+        if (!isWhite) {
+            fullmoveNumber++;
         }
+    }
 
-        if (lastMove.capturedPiece != null) {
-            restoreCapturedPiece(lastMove.capturedPiece, 1L << lastMove.toPosition, !isPieceWhite(lastMove.movedPiece));
+    /**
+     * Passes the turn without moving, for null move pruning. Must not be made while in check.
+     */
+    public void makeNullMove() {
+        if (moveLogCount == moveLogs.length) {
+            growMoveLogs();
         }
+        moveLogs[moveLogCount++].set(PackedMove.NONE, null, null, castlingRights, enPassantSquare, zobristKey, halfmoveClock);
 
-        castlingRights = lastMove.castlingRightsBeforeMove;
-
-        if (Math.abs(lastMove.fromPosition - lastMove.toPosition) == 2 && (lastMove.movedPiece == PieceType.WHITE_KING || lastMove.movedPiece == PieceType.BLACK_KING)) {
-
-            boolean kingSide = lastMove.toPosition > lastMove.fromPosition;
-            long rookFromPosition, rookToPosition;
+        zobristKey ^= Zobrist.enPassantKey(enPassantSquare) ^ Zobrist.blackToMoveKey();
+        enPassantSquare = -1;
+        whiteToMove = !whiteToMove;
+    }
 
-            if (lastMove.movedPiece == PieceType.WHITE_KING) whiteCastled = false;
-            else blackCastled = false;
+    public void undoNullMove() {
+        MoveLog lastMove = moveLogs[--moveLogCount];
+        enPassantSquare = lastMove.enPassantSquareBeforeMove;
+        zobristKey = lastMove.zobristKeyBeforeMove;
+        whiteToMove = !whiteToMove;
+    }
 
-            if (kingSide) {
-                rookFromPosition = isPieceWhite(lastMove.movedPiece) ? 63 : 7;
-                rookToPosition = rookFromPosition - 2;
-            } else {
-                rookFromPosition = isPieceWhite(lastMove.movedPiece) ? 56 : 0;
-                rookToPosition = rookFromPosition + 3;
-            }
-            updateBitboards(lastMove.movedPiece == PieceType.WHITE_KING ? PieceType.WHITE_ROOK : PieceType.BLACK_ROOK, 1L << rookToPosition, 1L << rookFromPosition, isPieceWhite(lastMove.movedPiece));
-        }
+    /**
+     * @return The Zobrist key of just the pawns, equal for any two positions with the same pawn structure
+     */
+    public long getPawnKey() {
+        return pawnKey;
+    }
 
+    /**
+     * @return The middlegame material and piece-square score of the position from White's side
+     */
+    public int getMiddlegameScore() {
+        return middlegameScore;
+    }
 
+    /**
+     * @return The endgame material and piece-square score of the position from White's side
+     */
+    public int getEndgameScore() {
+        return endgameScore;
+    }
 
+    /**
+     * @return The game phase, from PieceSquareTables.MAX_PHASE with every piece on the board down to 0 with only
+     * pawns and kings left. Promotions can push it above MAX_PHASE.
+     */
+    public int getPhase() {
+        return phase;
+    }
 
-        updateCompositeBitboards();
+    /**
+     * @return The last move made, or PackedMove.NONE at the start of the history or after a null move
+     */
+    public int getLastMove() {
+        return moveLogCount == 0 ? PackedMove.NONE : moveLogs[moveLogCount - 1].move;
     }
 
-    private boolean isPieceWhite(PieceType piece) {
-        return piece.ordinal() <= PieceType.WHITE_KING.ordinal();
+    public int getTotalPieceCount() {
+        return Long.bitCount(occupiedSquares);
     }
 
-    private void restoreCapturedPiece(PieceType pieceType, long positionMask, boolean isWhite) {
-        switch (pieceType) {
-            case WHITE_PAWN -> {
-                if (isWhite) whitePawns |= positionMask;
-            }
-            case WHITE_KNIGHT -> {
-                if (isWhite) whiteKnights |= positionMask;
-            }
-            case WHITE_BISHOP -> {
-                if (isWhite) whiteBishops |= positionMask;
-            }
-            case WHITE_ROOK -> {
-                if (isWhite) whiteRooks |= positionMask;
-            }
-            case WHITE_QUEEN -> {
-                if (isWhite) whiteQueens |= positionMask;
-            }
-            case WHITE_KING -> {
-                if (isWhite) whiteKing |= positionMask;
-            }
-            case BLACK_PAWN -> {
-                if (!isWhite) blackPawns |= positionMask;
-            }
-            case BLACK_KNIGHT -> {
-                if (!isWhite) blackKnights |= positionMask;
-            }
-            case BLACK_BISHOP -> {
-                if (!isWhite) blackBishops |= positionMask;
-            }
-            case BLACK_ROOK -> {
-                if (!isWhite) blackRooks |= positionMask;
-            }
-            case BLACK_QUEEN -> {
-                if (!isWhite) blackQueens |= positionMask;
-            }
-            case BLACK_KING -> {
-                if (!isWhite) blackKing |= positionMask;
-            }
+    /**
+     * Moves the castling rook, or moves it back when undoing
+     */
+    private void moveRookForCastling(boolean isWhite, boolean kingSide, boolean isUndo) {
+        int rookFrom, rookTo;
+        if (isWhite) {
+            rookFrom = kingSide ? 63 : 56;
+            rookTo = kingSide ? 61 : 59;
+        } else {
+            rookFrom = kingSide ? 7 : 0;
+            rookTo = kingSide ? 5 : 3;
+        }
+        if (isUndo) {
+            int temp = rookFrom;
+            rookFrom = rookTo;
+            rookTo = temp;
         }
 
-        updateCompositeBitboards();
+        PieceType rook = isWhite ? PieceType.WHITE_ROOK : PieceType.BLACK_ROOK;
+        removePiece(rook, rookFrom);
+        addPiece(rook, rookTo);
     }
 
-    public void addMoves(long moveBitboard, int offset, boolean isWhite) {
-        while (moveBitboard != 0) {
-            int to = Long.numberOfTrailingZeros(moveBitboard);
-            int from = to + offset;
-            addMove(from, to, isWhite);
-            moveBitboard &= moveBitboard - 1;
-        }
-    }
+    public void undoMove() {
+        if (moveLogCount == 0) return;
+
+        MoveLog lastMove = moveLogs[--moveLogCount];
+        int move = lastMove.move;
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        int flags = PackedMove.flags(move);
+        boolean isWhite = isPieceWhite(lastMove.movedPiece);
 
-    public void addMove(int from, int to, boolean isWhite) {
-        long toPosition = 1L << to;
-        boolean isToPositionKing = (toPosition & (whiteKing | blackKing)) != 0;
-        boolean isCapture = getPieceAtSquare(to, !isWhite) != null;
-        PieceType pieceAtSquare = getPieceAtSquare(from, isWhite);
-        boolean isCastleMove = Math.abs(from - to) == 2 && pieceAtSquare.name().toLowerCase().contains("king");
-        Move move = new Move(from, to, isCapture, isWhite, isCastleMove);
-        boolean leavesKingInCheck = isKingInCheckAfterMove(move, isWhite);
+        // Taking the piece off the target square also removes a promoted piece
+        removePiece(squares[to], to);
+        addPiece(lastMove.movedPiece, from);
 
-        if (!isToPositionKing && !leavesKingInCheck) {
-            moveList.add(move);
+        if (lastMove.capturedPiece != null) {
+            int captureSquare = flags == PackedMove.EN_PASSANT ? to + (isWhite ? 8 : -8) : to;
+            addPiece(lastMove.capturedPiece, captureSquare);
+        }
+
+        if (flags == PackedMove.KING_CASTLE || flags == PackedMove.QUEEN_CASTLE) {
+            moveRookForCastling(isWhite, flags == PackedMove.KING_CASTLE, true);
+            if (isWhite) whiteCastled = false;
+            else blackCastled = false;
         }
-    }
 
-    public void addMovesFromBitboard(int from, long toBitboard, boolean isWhite) {
-        while (toBitboard != 0) {
-            int to = Long.numberOfTrailingZeros(toBitboard);
-            addMove(from, to, isWhite);
-            toBitboard &= toBitboard - 1;
+        castlingRights = lastMove.castlingRightsBeforeMove;
+        enPassantSquare = lastMove.enPassantSquareBeforeMove;
+        zobristKey = lastMove.zobristKeyBeforeMove;
+        whiteToMove = !whiteToMove;
+        halfmoveClock = lastMove.halfmoveClockBeforeMove;
+        if (!isWhite) {
+            fullmoveNumber--;
         }
     }
 
-    private void updateBitboards(PieceType pieceType, long fromMask, long toMask, boolean isWhite) {
-        if (pieceType == null) {
-            throw new IllegalStateException("Attempted to move a piece that is null");
-        } else {
-            switch (pieceType) {
-                case WHITE_PAWN -> whitePawns = (whitePawns & ~fromMask) | toMask;
-                case WHITE_KNIGHT -> whiteKnights = (whiteKnights & ~fromMask) | toMask;
-                case WHITE_BISHOP -> whiteBishops = (whiteBishops & ~fromMask) | toMask;
-                case WHITE_ROOK -> whiteRooks = (whiteRooks & ~fromMask) | toMask;
-                case WHITE_QUEEN -> whiteQueens = (whiteQueens & ~fromMask) | toMask;
-                case WHITE_KING -> whiteKing = (whiteKing & ~fromMask) | toMask;
-                case BLACK_PAWN -> blackPawns = (blackPawns & ~fromMask) | toMask;
-                case BLACK_KNIGHT -> blackKnights = (blackKnights & ~fromMask) | toMask;
-                case BLACK_BISHOP -> blackBishops = (blackBishops & ~fromMask) | toMask;
-                case BLACK_ROOK -> blackRooks = (blackRooks & ~fromMask) | toMask;
-                case BLACK_QUEEN -> blackQueens = (blackQueens & ~fromMask) | toMask;
-                case BLACK_KING -> blackKing = (blackKing & ~fromMask) | toMask;
+    /**
+     * Hashes the whole position from scratch. The board keeps its key incrementally, so this is only
+     * needed when a position is set up or to verify the incremental key.
+     *
+     * @return The Zobrist key of the current position
+     */
+    public long computeZobristKey() {
+        long key = 0L;
+        for (int square = 0; square < 64; square++) {
+            if (squares[square] != null) {
+                key ^= Zobrist.pieceKey(squares[square], square);
             }
         }
-    }
-    private void updateCompositeBitboards() {
-        whitePieces = whitePawns | whiteKnights | whiteBishops | whiteRooks | whiteQueens | whiteKing;
-        blackPieces = blackPawns | blackKnights | blackBishops | blackRooks | blackQueens | blackKing;
-        occupiedSquares = whitePieces | blackPieces;
+        key ^= Zobrist.castlingKey(castlingRights) ^ Zobrist.enPassantKey(enPassantSquare);
+        if (!whiteToMove) {
+            key ^= Zobrist.blackToMoveKey();
+        }
+        return key;
     }
 
-    private void clearOpponentPieceFromSquare(long mask, boolean isOpponentWhite) {
-        if (isOpponentWhite) {
-            if ((whitePawns & mask) != 0) whitePawns &= ~mask;
-            else if ((whiteKnights & mask) != 0) whiteKnights &= ~mask;
-            else if ((whiteBishops & mask) != 0) whiteBishops &= ~mask;
-            else if ((whiteRooks & mask) != 0) whiteRooks &= ~mask;
-            else if ((whiteQueens & mask) != 0) whiteQueens &= ~mask;
-            else if ((whiteKing & mask) != 0) whiteKing &= ~mask;
-        } else {
-            // Check and clear the piece from black bitboards
-            if ((blackPawns & mask) != 0) blackPawns &= ~mask;
-            else if ((blackKnights & mask) != 0) blackKnights &= ~mask;
-            else if ((blackBishops & mask) != 0) blackBishops &= ~mask;
-            else if ((blackRooks & mask) != 0) blackRooks &= ~mask;
-            else if ((blackQueens & mask) != 0) blackQueens &= ~mask;
-            else if ((blackKing & mask) != 0) blackKing &= ~mask;
+    private void growMoveLogs() {
+        int oldLength = moveLogs.length;
+        moveLogs = Arrays.copyOf(moveLogs, oldLength * 2);
+        for (int i = oldLength; i < moveLogs.length; i++) {
+            moveLogs[i] = new MoveLog();
         }
+    }
 
+    private boolean isPieceWhite(PieceType piece) {
+        return piece.ordinal() <= PieceType.WHITE_KING.ordinal();
+    }
 
-        updateCompositeBitboards();
+    /**
+     * Puts a piece on an empty square, keeping every bitboard and the square table in sync
+     */
+    private void addPiece(PieceType pieceType, int square) {
+        long mask = 1L << square;
+        pieceBitboards[pieceType.ordinal()] |= mask;
+        if (isPieceWhite(pieceType)) whitePieces |= mask;
+        else blackPieces |= mask;
+        occupiedSquares |= mask;
+        squares[square] = pieceType;
+        zobristKey ^= Zobrist.pieceKey(pieceType, square);
+        if (pieceType == PieceType.WHITE_PAWN || pieceType == PieceType.BLACK_PAWN) {
+            pawnKey ^= Zobrist.pieceKey(pieceType, square);
+        }
+        middlegameScore += PieceSquareTables.middlegameValue(pieceType, square);
+        endgameScore += PieceSquareTables.endgameValue(pieceType, square);
+        phase += PieceSquareTables.phaseWeight(pieceType);
     }
 
     /**
-     * Is a same color pieced on a given square?
-     *
-     * @param square  The square
-     * @param isWhite The color your checking
-     * @return a boolean that determines if a square contains a same team piece
+     * Takes a piece off its square, keeping every bitboard and the square table in sync
      */
-    private boolean isOwnPieceOnSquare(int square, boolean isWhite) {
-        long position = 1L << square;
-        return isWhite ? (position & whitePieces) != 0 : (position & blackPieces) != 0;
+    private void removePiece(PieceType pieceType, int square) {
+        long mask = ~(1L << square);
+        pieceBitboards[pieceType.ordinal()] &= mask;
+        if (isPieceWhite(pieceType)) whitePieces &= mask;
+        else blackPieces &= mask;
+        occupiedSquares &= mask;
+        squares[square] = null;
+        zobristKey ^= Zobrist.pieceKey(pieceType, square);
+        if (pieceType == PieceType.WHITE_PAWN || pieceType == PieceType.BLACK_PAWN) {
+            pawnKey ^= Zobrist.pieceKey(pieceType, square);
+        }
+        middlegameScore -= PieceSquareTables.middlegameValue(pieceType, square);
+        endgameScore -= PieceSquareTables.endgameValue(pieceType, square);
+        phase -= PieceSquareTables.phaseWeight(pieceType);
     }
 
     /**
@@ -377,74 +524,80 @@ public class Bitboard {
      * @return The PieceType on the square
      */
     public PieceType getPieceAtSquare(int square, boolean isWhite) {
-        long mask = 1L << square;
-
-        if ((whitePawns & mask) != 0 && isWhite) return PieceType.WHITE_PAWN;
-        if ((whiteKnights & mask) != 0 && isWhite) return PieceType.WHITE_KNIGHT;
-        if ((whiteBishops & mask) != 0 && isWhite) return PieceType.WHITE_BISHOP;
-        if ((whiteRooks & mask) != 0 && isWhite) return PieceType.WHITE_ROOK;
-        if ((whiteQueens & mask) != 0 && isWhite) return PieceType.WHITE_QUEEN;
-        if ((whiteKing & mask) != 0 && isWhite) return PieceType.WHITE_KING;
-
-        if ((blackPawns & mask) != 0 && !isWhite) return PieceType.BLACK_PAWN;
-        if ((blackKnights & mask) != 0 && !isWhite) return PieceType.BLACK_KNIGHT;
-        if ((blackBishops & mask) != 0 && !isWhite) return PieceType.BLACK_BISHOP;
-        if ((blackRooks & mask) != 0 && !isWhite) return PieceType.BLACK_ROOK;
-        if ((blackQueens & mask) != 0 && !isWhite) return PieceType.BLACK_QUEEN;
-        if ((blackKing & mask) != 0 && !isWhite) return PieceType.BLACK_KING;
+        PieceType piece = squares[square];
+        if (piece == null || isPieceWhite(piece) != isWhite) {
+            return null; // No piece at the given square for the specified color
+        }
+        return piece;
+    }
 
-        return null; // No piece at the given square for the specified color
+    /**
+     * Gets the piece on a square regardless of color
+     *
+     * @param square The square
+     * @return The PieceType on the square, or null if the square is empty
+     */
+    public PieceType getPieceAtSquare(int square) {
+        return squares[square];
     }
 
     // Getters and Setters
     public long getWhitePawns() {
-        return whitePawns;
+        return pieceBitboards[PieceType.WHITE_PAWN.ordinal()];
     }
 
     public long getBlackPawns() {
-        return blackPawns;
+        return pieceBitboards[PieceType.BLACK_PAWN.ordinal()];
     }
 
     public long getWhiteKnights() {
-        return whiteKnights;
+        return pieceBitboards[PieceType.WHITE_KNIGHT.ordinal()];
     }
 
     public long getBlackKnights() {
-        return blackKnights;
+        return pieceBitboards[PieceType.BLACK_KNIGHT.ordinal()];
     }
 
     public long getWhiteBishops() {
-        return whiteBishops;
+        return pieceBitboards[PieceType.WHITE_BISHOP.ordinal()];
     }
 
     public long getBlackBishops() {
-        return blackBishops;
+        return pieceBitboards[PieceType.BLACK_BISHOP.ordinal()];
     }
 
     public long getWhiteRooks() {
-        return whiteRooks;
+        return pieceBitboards[PieceType.WHITE_ROOK.ordinal()];
     }
 
     public long getBlackRooks() {
-        return blackRooks;
+        return pieceBitboards[PieceType.BLACK_ROOK.ordinal()];
     }
 
     public long getWhiteQueens() {
-        return whiteQueens;
+        return pieceBitboards[PieceType.WHITE_QUEEN.ordinal()];
     }
 
     public long getBlackQueens() {
-        return blackQueens;
+        return pieceBitboards[PieceType.BLACK_QUEEN.ordinal()];
     }
     public long getWhiteKing() {
-        return whiteKing;
+        return pieceBitboards[PieceType.WHITE_KING.ordinal()];
     }
     public long getBlackKing() {
-        return blackKing;
+        return pieceBitboards[PieceType.BLACK_KING.ordinal()];
+    }
+
+    /**
+     * @param pieceType The piece type
+     * @return The bitboard of every piece of that type
+     */
+    public long getPieces(PieceType pieceType) {
+        return pieceBitboards[pieceType.ordinal()];
     }
 
     private int getKingPosition(boolean isWhite) {
-        return Long.numberOfTrailingZeros(isWhite ? whiteKing : blackKing);
+        return Long.numberOfTrailingZeros(isWhite ? getWhiteKing() : getBlackKing());
     }
 
     public long getWhitePieces() {
@@ -470,20 +623,39 @@ public class Bitboard {
         return castlingRights;
     }
 
-    public List<Move> getMoveList() {
-        return moveList;
+    /**
+     * @return Is it white's turn to move?
+     */
+    public boolean isWhiteToMove() {
+        return whiteToMove;
     }
 
-    public void clearMoveList() {
-        moveList.clear();
+    /**
+     * @return The number of half moves since the last capture or pawn move
+     */
+    public int getHalfmoveClock() {
+        return halfmoveClock;
     }
 
-    public void addToMoveList(Move move) {
-        moveList.add(move);
+    /**
+     * @return The number of the current full move, starting at 1
+     */
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    /**
+     * @return The Zobrist key of the current position
+     */
+    public long getZobristKey() {
+        return zobristKey;
     }
 
-    public void addAllToMoveList(List<Move> moves) {
-        moveList.addAll(moves);
+    /**
+     * @return The square a pawn can capture en passant on, or -1 if there is none
+     */
+    public int getEnPassantSquare() {
+        return enPassantSquare;
     }
 
     public MoveGenerator getMoveGenerator() {
@@ -491,91 +663,222 @@ public class Bitboard {
     }
 
     /**
-     * Checks if the king is in check
+     * Checks if the king is left in check by a move
      *
+     * @param move    The packed move
      * @param isWhite Is the black or white king in check?
      * @return A boolean that determines if the king of a given color is in check.
      */
-    public boolean isKingInCheckAfterMove(Move move, boolean isWhite) {
-        movePiece(move, isWhite);
+    public boolean isKingInCheckAfterMove(int move, boolean isWhite) {
+        makeMove(move);
         boolean isInCheck = isSquareAttacked(getKingPosition(isWhite), isWhite);
         undoMove();
         return isInCheck;
     }
 
+    /**
+     * @param isWhite The king's color
+     * @return Is the king of the given color in check?
+     */
+    public boolean isKingInCheck(boolean isWhite) {
+        return isSquareAttacked(getKingPosition(isWhite), isWhite);
+    }
+
     /**
      * A method that checks for attacks on a given square
-     * This is very inefficient, however it's more efficient than regenerating a full list of moves to check for illegal moves
-     * This will be replaced soon.
+     * Each piece type is tested by intersecting its precomputed attack set from the square with the enemy pieces of that type
      *
      * @param square  The square we are testing
      * @param isWhite Is white or black getting attacked?
      * @return Is the square being attacked
      */
     public boolean isSquareAttacked(int square, boolean isWhite) {
-        long opponentPawns = isWhite ? blackPawns : whitePawns;
-        long opponentKnights = isWhite ? blackKnights : whiteKnights;
-        long opponentBishopsQueens = isWhite ? (blackBishops | blackQueens) : (whiteBishops | whiteQueens);
-        long opponentRooksQueens = isWhite ? (blackRooks | blackQueens) : (whiteRooks | whiteQueens);
-        long opponentKing = isWhite ? blackKing : whiteKing;
-        long allPieces = whitePieces | blackPieces;
-
-        int[] pawnAttackOffsets = isWhite ? new int[]{-9, -7} : new int[]{7, 9};
-        for (int offset : pawnAttackOffsets) {
-            int targetSquare = square + offset;
-            if (BitboardUtils.isSquareOnBoard(targetSquare) && (opponentPawns & (1L << targetSquare)) != 0) {
-                return true;
-            }
+        return isSquareAttacked(square, isWhite, occupiedSquares);
+    }
+
+    /**
+     * Checks for attacks on a given square with sliders blocked by the given occupancy instead of the board's
+     *
+     * @param square    The square we are testing
+     * @param isWhite   Is white or black getting attacked?
+     * @param occupancy The occupied squares sliders are blocked by
+     * @return Is the square being attacked
+     */
+    public boolean isSquareAttacked(int square, boolean isWhite, long occupancy) {
+        long opponentPawns = isWhite ? getBlackPawns() : getWhitePawns();
+        long opponentKnights = isWhite ? getBlackKnights() : getWhiteKnights();
+        long opponentBishopsQueens = isWhite ? (getBlackBishops() | getBlackQueens()) : (getWhiteBishops() | getWhiteQueens());
+        long opponentRooksQueens = isWhite ? (getBlackRooks() | getBlackQueens()) : (getWhiteRooks() | getWhiteQueens());
+        long opponentKing = isWhite ? getBlackKing() : getWhiteKing();
+
+        // A pawn of our color on this square would attack exactly the squares enemy pawns must stand on to attack it
+        return (AttackTables.pawnAttacks(square, isWhite) & opponentPawns) != 0
+                || (AttackTables.knightAttacks(square) & opponentKnights) != 0
+                || (AttackTables.kingAttacks(square) & opponentKing) != 0
+                || (MagicBitboards.bishopAttacks(square, occupancy) & opponentBishopsQueens) != 0
+                || (MagicBitboards.rookAttacks(square, occupancy) & opponentRooksQueens) != 0;
+    }
+
+    /**
+     * Gets every piece of either color that attacks a given square.
+     * Passing an occupancy with pieces removed reveals the sliders standing behind them (x-rays).
+     *
+     * @param square    The square we are testing
+     * @param occupancy The occupied squares sliders are blocked by
+     * @return A bitboard of the attacking pieces
+     */
+    public long attackersTo(int square, long occupancy) {
+        return (AttackTables.pawnAttacks(square, true) & getBlackPawns())
+                | (AttackTables.pawnAttacks(square, false) & getWhitePawns())
+                | (AttackTables.knightAttacks(square) & (getWhiteKnights() | getBlackKnights()))
+                | (AttackTables.kingAttacks(square) & (getWhiteKing() | getBlackKing()))
+                | (MagicBitboards.bishopAttacks(square, occupancy) & (getWhiteBishops() | getBlackBishops() | getWhiteQueens() | getBlackQueens()))
+                | (MagicBitboards.rookAttacks(square, occupancy) & (getWhiteRooks() | getBlackRooks() | getWhiteQueens() | getBlackQueens()));
+    }
+
+    /**
+     * Static exchange evaluation: plays out every capture on the move's target square, each side always
+     * recapturing with its least valuable piece and free to stop when recapturing would lose. Sliders hidden
+     * behind a capturer join in once it has moved, and the king only recaptures onto an undefended square.
+     *
+     * @param move A packed capture or promotion
+     * @return The material the moving side expects to win, negative if the move loses material
+     */
+    public int see(int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        if (PackedMove.isCastle(move)) {
+            return 0;
         }
 
-        int[] knightOffsets = {-17, -15, -10, -6, 6, 10, 15, 17};
-        for (int offset : knightOffsets) {
-            int targetSquare = square + offset;
-            if (BitboardUtils.isSquareOnBoard(targetSquare) && (opponentKnights & (1L << targetSquare)) != 0) {
-                return true;
-            }
+        PieceType mover = squares[from];
+        boolean sideIsWhite = isPieceWhite(mover);
+        long occupancy = occupiedSquares;
+        int depth = 0;
+
+        if (PackedMove.isEnPassant(move)) {
+            seeGains[0] = SEE_VALUES[PieceType.WHITE_PAWN.ordinal()];
+            occupancy &= ~(1L << (to + (sideIsWhite ? 8 : -8)));
+        } else {
+            seeGains[0] = squares[to] == null ? 0 : SEE_VALUES[squares[to].ordinal()];
+        }
+        int onSquareValue = SEE_VALUES[mover.ordinal()];
+        if (PackedMove.isPromotion(move)) {
+            PieceType promoted = PackedMove.promotionPiece(move, sideIsWhite);
+            onSquareValue = SEE_VALUES[promoted.ordinal()];
+            seeGains[0] += onSquareValue - SEE_VALUES[mover.ordinal()];
         }
 
-        int[] bishopOffsets = {-9, -7, 7, 9};
-        int[] rookOffsets = {-8, -1, 1, 8};
+        long fromBit = 1L << from;
+        long attackers = attackersTo(to, occupancy);
+        while (fromBit != 0) {
+            depth++;
+            sideIsWhite = !sideIsWhite;
+            // What this side would be up if it takes the piece now on the square
+            seeGains[depth] = onSquareValue - seeGains[depth - 1];
+            if (depth == seeGains.length - 1) {
+                break;
+            }
 
-        for (int offset : bishopOffsets) {
-            int targetSquare = square;
-            while (true) {
-                targetSquare += offset;
-                if (!BitboardUtils.isSquareOnBoard(targetSquare) || BitboardUtils.isEdgeWrap(targetSquare - offset, targetSquare)) {
-                    break;
-                }
-                if ((allPieces & (1L << targetSquare)) != 0) {
-                    if ((opponentBishopsQueens & (1L << targetSquare)) != 0) return true;
+            occupancy &= ~fromBit;
+            attackers = attackersTo(to, occupancy) & occupancy;
+            fromBit = 0;
+            long sideAttackers = attackers & (sideIsWhite ? whitePieces : blackPieces);
+            int firstType = sideIsWhite ? PieceType.WHITE_PAWN.ordinal() : PieceType.BLACK_PAWN.ordinal();
+            for (int type = firstType; type < firstType + 6 && sideAttackers != 0; type++) {
+                long typeAttackers = sideAttackers & pieceBitboards[type];
+                if (typeAttackers != 0) {
+                    fromBit = typeAttackers & -typeAttackers;
+                    onSquareValue = SEE_VALUES[type];
                     break;
                 }
             }
-        }
-        for (int offset : rookOffsets) {
-            int targetSquare = square;
-            while (true) {
-                targetSquare += offset;
-                if (!BitboardUtils.isSquareOnBoard(targetSquare) || BitboardUtils.isEdgeWrap(targetSquare - offset, targetSquare)) {
-                    break;
-                }
-                if ((allPieces & (1L << targetSquare)) != 0) {
-                    if ((opponentRooksQueens & (1L << targetSquare)) != 0) return true;
-                    break;
-                }
+            // The king can only take if nothing defends the square
+            if (fromBit != 0 && (pieceBitboards[firstType + 5] & fromBit) != 0
+                    && (attackers & (sideIsWhite ? blackPieces : whitePieces)) != 0) {
+                fromBit = 0;
             }
         }
 
-        int[] kingOffsets = {-9, -8, -7, -1, 1, 7, 8, 9};
-        for (int offset : kingOffsets) {
-            int targetSquare = square + offset;
-            if (BitboardUtils.isSquareOnBoard(targetSquare) && (opponentKing & (1L << targetSquare)) != 0) {
-                return true;
-            }
+        // Unwind: at every step the side to capture picks the better of capturing and stopping
+        while (--depth > 0) {
+            seeGains[depth - 1] = -Math.max(-seeGains[depth - 1], seeGains[depth]);
         }
-
-        return false;
+        return seeGains[0];
     }
 
+    /**
+     * Checks whether a move's static exchange reaches a threshold. This stops as soon as the answer is known,
+     * so it is much cheaper than see for pruning and sorting captures into winning and losing.
+     *
+     * @param move A packed move
+     * @param threshold The material the moving side must at least come out with
+     * @return Is see(move) >= threshold?
+     */
+    public boolean seeGE(int move, int threshold) {
+        if (PackedMove.isCastle(move)) {
+            return threshold <= 0;
+        }
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        PieceType mover = squares[from];
+        boolean sideIsWhite = isPieceWhite(mover);
+        long occupancy = occupiedSquares & ~(1L << from);
+
+        int captureValue;
+        if (PackedMove.isEnPassant(move)) {
+            captureValue = SEE_VALUES[PieceType.WHITE_PAWN.ordinal()];
+            occupancy &= ~(1L << (to + (sideIsWhite ? 8 : -8)));
+        } else {
+            captureValue = squares[to] == null ? 0 : SEE_VALUES[squares[to].ordinal()];
+        }
+        int onSquareValue = SEE_VALUES[mover.ordinal()];
+        if (PackedMove.isPromotion(move)) {
+            onSquareValue = SEE_VALUES[PackedMove.promotionPiece(move, sideIsWhite).ordinal()];
+            captureValue += onSquareValue - SEE_VALUES[mover.ordinal()];
+        }
 
+        // swap is how far past the threshold the side to move is, assuming the other side takes back next
+        int swap = captureValue - threshold;
+        if (swap < 0) {
+            return false;
+        }
+        swap = onSquareValue - swap;
+        if (swap <= 0) {
+            // Even losing the capturer for nothing keeps us at the threshold
+            return true;
+        }
+
+        long attackers = attackersTo(to, occupancy);
+        // 1 while the moving side is at or above the threshold
+        int result = 1;
+        while (true) {
+            sideIsWhite = !sideIsWhite;
+            attackers &= occupancy;
+            long sideAttackers = attackers & (sideIsWhite ? whitePieces : blackPieces);
+            if (sideAttackers == 0) {
+                break;
+            }
+            result ^= 1;
+
+            int firstType = sideIsWhite ? PieceType.WHITE_PAWN.ordinal() : PieceType.BLACK_PAWN.ordinal();
+            int type = firstType;
+            while ((sideAttackers & pieceBitboards[type]) == 0) {
+                type++;
+            }
+            if (type == firstType + 5) {
+                // The king can only take if nothing defends the square
+                return (attackers & ~(sideIsWhite ? whitePieces : blackPieces)) != 0 ? result == 0 : result == 1;
+            }
+            swap = SEE_VALUES[type] - swap;
+            if (swap < result) {
+                break;
+            }
+            long attackerBit = sideAttackers & pieceBitboards[type];
+            occupancy &= ~(attackerBit & -attackerBit);
+            // Recomputing with the capturer gone brings in any slider behind it
+            attackers = attackersTo(to, occupancy);
+        }
+        return result == 1;
+    }
 }
@@ -0,0 +1,189 @@
+package com.github.jaceg18.chess.game;
+
+import com.github.jaceg18.chess.game.pieces.PieceType;
+
+/**
+ * Material plus piece-square value of every piece on every square, once for the middlegame and once for the endgame.
+ * Bitboard adds these up as pieces are placed and removed, along with each piece's weight towards the game phase,
+ * so the evaluation reads the sums instead of walking the board.
+ * Tables are written from White's side, rank 8 first to match the square numbering; Black's are mirrored.
+ */
+public final class PieceSquareTables {
+    public static final int PAWN_VALUE = 100;
+    public static final int KNIGHT_VALUE = 300;
+    public static final int BISHOP_VALUE = 300;
+    public static final int ROOK_VALUE = 500;
+    public static final int QUEEN_VALUE = 900;
+    public static final int KING_VALUE = 0;
+    // The phase of the starting position: four minor pieces, four rooks and two queens
+    public static final int MAX_PHASE = 24;
+
+    private static final int[] PAWN_MIDDLEGAME_TABLE = {
+            500, 500, 500, 500, 500, 500, 500, 500,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            10, 10, 20, 30, 30, 20, 10, 10,
+            5, 5, 10, 25, 25, 10, 5, 5,
+            0, 0, 0, 20, 20, 0, 0, 0,
+            5, -5, -10, 5, 5, -10, -5, 5,
+            25, 10, 15, -10, -10, 15, 10, 25,
+            0, 0, 0, 0, 0, 0, 0, 0
+    };
+
+    private static final int[] KNIGHT_MIDDLEGAME_TABLE = {
+            -50, -40, -30, -30, -30, -30, -40, -50,
+            -40, -20, 0, 0, 0, 0, -20, -40,
+            -30, 0, 10, 15, 15, 10, 0, -30,
+            -30, 5, 15, 20, 20, 15, 5, -30,
+            -30, 0, 15, 20, 20, 15, 0, -30,
+            -30, 5, 10, 15, 15, 10, 5, -30,
+            -40, -20, 0, 5, 5, 0, -20, -40,
+            -50, -40, -30, -30, -30, -30, -40, -50
+    };
+
+    private static final int[] BISHOP_MIDDLEGAME_TABLE = {
+            -20, -10, -10, -10, -10, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 10, 10, 5, 0, -10,
+            -10, 5, 5, 10, 10, 5, 5, -10,
+            -10, 0, 10, 10, 10, 10, 0, -10,
+            -10, 10, 10, 10, 10, 10, 10, -10,
+            -10, 5, 0, 0, 0, 0, 5, -10,
+            -20, -10, -10, -10, -10, -10, -10, -20
+    };
+
+    private static final int[] ROOK_MIDDLEGAME_TABLE = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            5, 10, 10, 10, 10, 10, 10, 5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            0, 0, 0, 5, 5, 0, 0, 0
+    };
+
+    private static final int[] QUEEN_MIDDLEGAME_TABLE = {
+            -20, -10, -10, -5, -5, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 5, 5, 5, 0, -10,
+            -5, 0, 5, 5, 5, 5, 0, -5,
+            0, 0, 5, 5, 5, 5, 0, -5,
+            -10, 5, 5, 5, 5, 5, 0, -10,
+            -10, 0, 5, 0, 0, 0, 0, -10,
+            -20, -10, -10, -5, -5, -10, -10, -20
+    };
+
+    private static final int[] KING_MIDDLEGAME_TABLE = {
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -20, -30, -30, -40, -40, -30, -30, -20,
+            -10, -20, -20, -20, -20, -20, -20, -10,
+            20, 20, 0, 0, 0, 0, 20, 20,
+            20, 30, 10, 0, 0, 10, 30, 20
+    };
+
+    // Pawns are worth more the closer they are to promoting, and the king's shelter no longer matters
+    private static final int[] PAWN_ENDGAME_TABLE = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            90, 90, 90, 90, 90, 90, 90, 90,
+            60, 60, 60, 60, 60, 60, 60, 60,
+            35, 35, 35, 35, 35, 35, 35, 35,
+            20, 20, 20, 20, 20, 20, 20, 20,
+            10, 10, 10, 10, 10, 10, 10, 10,
+            0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0
+    };
+
+    // Rooks want to be active, the back rank bonus for castling no longer applies
+    private static final int[] ROOK_ENDGAME_TABLE = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            10, 10, 10, 10, 10, 10, 10, 10,
+            0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0
+    };
+
+    // With the queens mostly gone the king is safe in the centre and should head there to support the pawns
+    private static final int[] KING_ENDGAME_TABLE = {
+            -50, -40, -30, -20, -20, -30, -40, -50,
+            -30, -20, -10, 0, 0, -10, -20, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -30, 0, 0, 0, 0, -30, -30,
+            -50, -30, -30, -30, -30, -30, -30, -50
+    };
+
+    // Material value of each PieceType, indexed by ordinal
+    private static final int[] MATERIAL_VALUES = {
+            PAWN_VALUE, KNIGHT_VALUE, BISHOP_VALUE, ROOK_VALUE, QUEEN_VALUE, KING_VALUE,
+            PAWN_VALUE, KNIGHT_VALUE, BISHOP_VALUE, ROOK_VALUE, QUEEN_VALUE, KING_VALUE
+    };
+
+    // How much each PieceType counts towards the game phase, indexed by ordinal
+    private static final int[] PHASE_WEIGHTS = {
+            0, 1, 1, 2, 4, 0,
+            0, 1, 1, 2, 4, 0
+    };
+
+    // Signed value of each PieceType on each square, positive for White
+    private static final int[][] MIDDLEGAME_VALUES = new int[PieceType.values().length][64];
+    private static final int[][] ENDGAME_VALUES = new int[PieceType.values().length][64];
+
+    static {
+        // Minor pieces and queens like the centre just as much in the endgame, so they share a table
+        fillValues(MIDDLEGAME_VALUES, PAWN_MIDDLEGAME_TABLE, KNIGHT_MIDDLEGAME_TABLE, BISHOP_MIDDLEGAME_TABLE,
+                ROOK_MIDDLEGAME_TABLE, QUEEN_MIDDLEGAME_TABLE, KING_MIDDLEGAME_TABLE);
+        fillValues(ENDGAME_VALUES, PAWN_ENDGAME_TABLE, KNIGHT_MIDDLEGAME_TABLE, BISHOP_MIDDLEGAME_TABLE,
+                ROOK_ENDGAME_TABLE, QUEEN_MIDDLEGAME_TABLE, KING_ENDGAME_TABLE);
+    }
+
+    private PieceSquareTables() {
+    }
+
+    private static void fillValues(int[][] values, int[]... tables) {
+        for (PieceType pieceType : PieceType.values()) {
+            int kind = pieceType.ordinal() % 6;
+            boolean isWhite = pieceType.ordinal() < 6;
+            for (int square = 0; square < 64; square++) {
+                // Flipping the rank bits mirrors the board top to bottom
+                int value = MATERIAL_VALUES[kind] + tables[kind][isWhite ? square : square ^ 56];
+                values[pieceType.ordinal()][square] = isWhite ? value : -value;
+            }
+        }
+    }
+
+    /**
+     * @return The piece's middlegame material and positional value on the square, positive for White and negative for Black
+     */
+    public static int middlegameValue(PieceType pieceType, int square) {
+        return MIDDLEGAME_VALUES[pieceType.ordinal()][square];
+    }
+
+    /**
+     * @return The piece's endgame material and positional value on the square, positive for White and negative for Black
+     */
+    public static int endgameValue(PieceType pieceType, int square) {
+        return ENDGAME_VALUES[pieceType.ordinal()][square];
+    }
+
+    /**
+     * @return How much the piece counts towards the game phase, 0 for pawns and kings
+     */
+    public static int phaseWeight(PieceType pieceType) {
+        return PHASE_WEIGHTS[pieceType.ordinal()];
+    }
+
+    /**
+     * @return The material value of a piece, 0 for kings
+     */
+    public static int materialValue(PieceType pieceType) {
+        return MATERIAL_VALUES[pieceType.ordinal()];
+    }
+}
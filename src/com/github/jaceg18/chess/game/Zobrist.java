@@ -0,0 +1,61 @@
+package com.github.jaceg18.chess.game;
+
+import com.github.jaceg18.chess.game.pieces.PieceType;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random keys for Zobrist hashing. A position's key is the XOR of the keys of every piece on its square,
+ * the side to move, the castling rights and the en passant file, so a move only has to XOR in what it changed.
+ * The keys come from a fixed seed so hashes are stable between runs.
+ */
+public final class Zobrist {
+    private static final long SEED = 0x5A6F62726973744CL;
+
+    private static final long[][] PIECE_KEYS = new long[PieceType.values().length][64];
+    private static final long[] CASTLING_KEYS = new long[16];
+    private static final long[] EN_PASSANT_FILE_KEYS = new long[8];
+    private static final long BLACK_TO_MOVE_KEY;
+
+    static {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (long[] pieceKeys : PIECE_KEYS) {
+            for (int square = 0; square < 64; square++) {
+                pieceKeys[square] = random.nextLong();
+            }
+        }
+        for (int i = 0; i < CASTLING_KEYS.length; i++) {
+            CASTLING_KEYS[i] = random.nextLong();
+        }
+        for (int file = 0; file < EN_PASSANT_FILE_KEYS.length; file++) {
+            EN_PASSANT_FILE_KEYS[file] = random.nextLong();
+        }
+        BLACK_TO_MOVE_KEY = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    public static long pieceKey(PieceType pieceType, int square) {
+        return PIECE_KEYS[pieceType.ordinal()][square];
+    }
+
+    /**
+     * @param castlingRights The four castling bits
+     */
+    public static long castlingKey(int castlingRights) {
+        return CASTLING_KEYS[castlingRights];
+    }
+
+    /**
+     * @param enPassantSquare The en passant square, or -1 if there is none
+     * @return The key for the square's file, or 0 when there is no en passant square
+     */
+    public static long enPassantKey(int enPassantSquare) {
+        return enPassantSquare == -1 ? 0L : EN_PASSANT_FILE_KEYS[enPassantSquare & 7];
+    }
+
+    public static long blackToMoveKey() {
+        return BLACK_TO_MOVE_KEY;
+    }
+}
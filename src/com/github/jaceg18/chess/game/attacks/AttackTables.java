@@ -0,0 +1,106 @@
+package com.github.jaceg18.chess.game.attacks;
+
+/**
+ * Precomputed attack sets for the non-sliding pieces, plus the rays between aligned squares used for pins and checks.
+ * Every table is built once at class load, so move generation, attack detection
+ * and evaluation can look attacks up instead of stepping through direction offsets.
+ */
+public final class AttackTables {
+    private static final int[] KNIGHT_DIRECTIONS = {-17, -15, -10, -6, 6, 10, 15, 17};
+    private static final int[] KING_DIRECTIONS = {-9, -8, -7, -1, 1, 7, 8, 9};
+
+    private static final long[] KNIGHT_ATTACKS = new long[64];
+    private static final long[] KING_ATTACKS = new long[64];
+    private static final long[] WHITE_PAWN_ATTACKS = new long[64];
+    private static final long[] BLACK_PAWN_ATTACKS = new long[64];
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINE = new long[64][64];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            KNIGHT_ATTACKS[square] = leaperAttacks(square, KNIGHT_DIRECTIONS);
+            KING_ATTACKS[square] = leaperAttacks(square, KING_DIRECTIONS);
+            // White pawns move towards square 0, black pawns towards square 63
+            WHITE_PAWN_ATTACKS[square] = leaperAttacks(square, new int[]{-9, -7});
+            BLACK_PAWN_ATTACKS[square] = leaperAttacks(square, new int[]{7, 9});
+        }
+
+        for (int a = 0; a < 64; a++) {
+            for (int b = 0; b < 64; b++) {
+                if (a == b) continue;
+                long squares = (1L << a) | (1L << b);
+                if ((MagicBitboards.rookAttacks(a, 0L) & (1L << b)) != 0) {
+                    BETWEEN[a][b] = MagicBitboards.rookAttacks(a, 1L << b) & MagicBitboards.rookAttacks(b, 1L << a);
+                    LINE[a][b] = (MagicBitboards.rookAttacks(a, 0L) & MagicBitboards.rookAttacks(b, 0L)) | squares;
+                } else if ((MagicBitboards.bishopAttacks(a, 0L) & (1L << b)) != 0) {
+                    BETWEEN[a][b] = MagicBitboards.bishopAttacks(a, 1L << b) & MagicBitboards.bishopAttacks(b, 1L << a);
+                    LINE[a][b] = (MagicBitboards.bishopAttacks(a, 0L) & MagicBitboards.bishopAttacks(b, 0L)) | squares;
+                }
+            }
+        }
+    }
+
+    private AttackTables() {
+    }
+
+    /**
+     * Gets the squares a knight attacks
+     * @param square The knight's square
+     * @return A bitboard of attacked squares
+     */
+    public static long knightAttacks(int square) {
+        return KNIGHT_ATTACKS[square];
+    }
+
+    /**
+     * Gets the squares a king attacks
+     * @param square The king's square
+     * @return A bitboard of attacked squares
+     */
+    public static long kingAttacks(int square) {
+        return KING_ATTACKS[square];
+    }
+
+    /**
+     * Gets the squares a pawn attacks.
+     * Looking up the opposite color gives the squares an enemy pawn would have to stand on to attack this square.
+     * @param square The pawn's square
+     * @param isWhite Is the pawn white?
+     * @return A bitboard of attacked squares
+     */
+    public static long pawnAttacks(int square, boolean isWhite) {
+        return isWhite ? WHITE_PAWN_ATTACKS[square] : BLACK_PAWN_ATTACKS[square];
+    }
+
+    /**
+     * Gets the squares strictly between two squares that share a rank, file or diagonal
+     * @param from The first square
+     * @param to The second square
+     * @return A bitboard of the squares in between, empty if the squares aren't aligned
+     */
+    public static long between(int from, int to) {
+        return BETWEEN[from][to];
+    }
+
+    /**
+     * Gets the whole rank, file or diagonal running through two squares, edge to edge
+     * @param from The first square
+     * @param to The second square
+     * @return A bitboard of the line, empty if the squares aren't aligned
+     */
+    public static long line(int from, int to) {
+        return LINE[from][to];
+    }
+
+    private static long leaperAttacks(int square, int[] directions) {
+        long attacks = 0L;
+        for (int direction : directions) {
+            int target = square + direction;
+            // A jump never moves more than two files, anything further has wrapped around the board edge
+            if (target >= 0 && target < 64 && Math.abs((square & 7) - (target & 7)) <= 2) {
+                attacks |= 1L << target;
+            }
+        }
+        return attacks;
+    }
+}
@@ -0,0 +1,162 @@
+package com.github.jaceg18.chess.game.attacks;
+
+/**
+ * Precomputed slider attack tables using "fancy" magic bitboards.
+ * The relevant occupancy of a square is multiplied by a magic number and shifted down to form an index
+ * into a per-square attack table, so bishop, rook and queen attacks are a single lookup.
+ * The magic numbers are fixed for this board's square numbering (a8 = 0, h1 = 63) and the tables are filled once at class load.
+ */
+public final class MagicBitboards {
+    private static final int[] ROOK_DIRECTIONS = {-8, -1, 1, 8};
+    private static final int[] BISHOP_DIRECTIONS = {-9, -7, 7, 9};
+
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final long[] ROOK_MAGICS = {
+            0x2480012015400084L, 0x4100108021004004L, 0x8100200009001040L, 0x4080080080100005L,
+            0x1200092082000410L, 0x9500040041000208L, 0x0400042090280201L, 0x0100002100008052L,
+            0x010180014000802AL, 0x0080402000401000L, 0x0080801000200080L, 0x0049000810002100L,
+            0x0100800800040080L, 0x0002800400020080L, 0x0000808002000100L, 0x1001000061970002L,
+            0x8080004000402000L, 0x1110044000200444L, 0x0020008010008024L, 0x1050018010804800L,
+            0x4008818008000400L, 0x0200808004000200L, 0x0014040008D00102L, 0x02029A0004008041L,
+            0x0400800080204000L, 0x0440004480200080L, 0x0020008280100020L, 0x4040401200200A00L,
+            0x084C000808008040L, 0x2322000200041008L, 0x0088420400380110L, 0x0000012200005084L,
+            0x8080004000402004L, 0x0000200281804000L, 0x0000200080801000L, 0x0001014823001000L,
+            0x0448001025000900L, 0x1402001002000409L, 0x2D4012010C001028L, 0x8500008042001124L,
+            0x3504803840008001L, 0x1001200250024000L, 0x8820020400101001L, 0x1800100008008080L,
+            0x8001001008010004L, 0x2404006008240110L, 0x0880081A49040010L, 0x0030050068820004L,
+            0x4020800040002080L, 0x0200200040008080L, 0x0802104120010300L, 0x8022010920401200L,
+            0x1000040008018180L, 0x0020040080020080L, 0x8003000200040100L, 0x1101000040820100L,
+            0x8040532203028042L, 0x1080108020400109L, 0x80201120000A4101L, 0x8405003000082025L,
+            0x0006001004082002L, 0x000200080410C122L, 0x9000100801224084L, 0x0600004C00802502L
+    };
+    private static final long[] BISHOP_MAGICS = {
+            0x0542902C08008020L, 0x00D0020210421821L, 0x00100112202801A1L, 0x0010890202000000L,
+            0x1204042030019080L, 0x0004220840482000L, 0x001604D004300010L, 0x0802824802100280L,
+            0x20040A0810040045L, 0x8210449002220820L, 0x0640080801102902L, 0x0120820A0A001000L,
+            0x44C0040421000180L, 0x1802421230240022L, 0x001818A210100401L, 0x4005108088080203L,
+            0x0010064004082090L, 0x00200A0242042103L, 0x0001001004008214L, 0x0048000082004180L,
+            0x10330040904010CAL, 0x000A008100424240L, 0x0400840404040284L, 0xA010820100482202L,
+            0xA1E0902008020811L, 0x0008200068924088L, 0x0944040240802280L, 0x004024C004010020L,
+            0x4230030040200800L, 0x00026B0006008200L, 0x404404048080C400L, 0x000C216020460220L,
+            0x0058608404100400L, 0x2082026080100100L, 0x2414022800140C40L, 0x0080020080080080L,
+            0x0002008400020202L, 0x2030120020021000L, 0x400128008105044CL, 0x0901004A00490100L,
+            0x8411545004004000L, 0x0000A40120901800L, 0x0081420041001000L, 0xA080002018020101L,
+            0x0204102012402201L, 0x0040080080200100L, 0x2020044100600201L, 0x000800C400808042L,
+            0x6000440208404800L, 0xA802005104100010L, 0x8108802084100000L, 0x0C81000042020001L,
+            0x8021401282020000L, 0x00420A1021020000L, 0x0060820C014C0180L, 0x0108010800910000L,
+            0x8042028044109C02L, 0x0001908400880400L, 0x41C1288C8400C800L, 0x08958A0000841100L,
+            0x0008011011020200L, 0x0000003020414500L, 0x0C401020061C4140L, 0x0050100208002024L
+    };
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final long[][] ROOK_ATTACKS = new long[64][];
+    private static final long[][] BISHOP_ATTACKS = new long[64][];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            ROOK_MASKS[square] = relevantOccupancyMask(square, ROOK_DIRECTIONS);
+            BISHOP_MASKS[square] = relevantOccupancyMask(square, BISHOP_DIRECTIONS);
+            ROOK_SHIFTS[square] = 64 - Long.bitCount(ROOK_MASKS[square]);
+            BISHOP_SHIFTS[square] = 64 - Long.bitCount(BISHOP_MASKS[square]);
+            ROOK_ATTACKS[square] = fillAttackTable(square, ROOK_MASKS[square], ROOK_MAGICS[square], ROOK_SHIFTS[square], ROOK_DIRECTIONS);
+            BISHOP_ATTACKS[square] = fillAttackTable(square, BISHOP_MASKS[square], BISHOP_MAGICS[square], BISHOP_SHIFTS[square], BISHOP_DIRECTIONS);
+        }
+    }
+
+    private MagicBitboards() {
+    }
+
+    /**
+     * Gets the squares a rook attacks
+     * @param square The rook's square
+     * @param occupancy Every occupied square on the board
+     * @return A bitboard of attacked squares, including the first blocker in each direction
+     */
+    public static long rookAttacks(int square, long occupancy) {
+        return ROOK_ATTACKS[square][(int) (((occupancy & ROOK_MASKS[square]) * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square])];
+    }
+
+    /**
+     * Gets the squares a bishop attacks
+     * @param square The bishop's square
+     * @param occupancy Every occupied square on the board
+     * @return A bitboard of attacked squares, including the first blocker in each direction
+     */
+    public static long bishopAttacks(int square, long occupancy) {
+        return BISHOP_ATTACKS[square][(int) (((occupancy & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square])];
+    }
+
+    /**
+     * Gets the squares a queen attacks
+     * @param square The queen's square
+     * @param occupancy Every occupied square on the board
+     * @return A bitboard of attacked squares, including the first blocker in each direction
+     */
+    public static long queenAttacks(int square, long occupancy) {
+        return rookAttacks(square, occupancy) | bishopAttacks(square, occupancy);
+    }
+
+    /**
+     * Builds the attack table of one square by walking every blocker subset of its mask once.
+     */
+    private static long[] fillAttackTable(int square, long mask, long magic, int shift, int[] directions) {
+        long[] table = new long[1 << Long.bitCount(mask)];
+
+        // Carry-rippler trick to enumerate every subset of the mask
+        long subset = 0L;
+        do {
+            int index = (int) ((subset * magic) >>> shift);
+            long attacks = slowAttacks(square, subset, directions);
+            if (table[index] != 0 && table[index] != attacks) {
+                throw new IllegalStateException("Magic number collision on square " + square);
+            }
+            table[index] = attacks;
+            subset = (subset - mask) & mask;
+        } while (subset != 0);
+
+        return table;
+    }
+
+    /**
+     * The squares that can block a slider on the given square. Board edges are left out since a piece there
+     * never hides anything behind it.
+     */
+    private static long relevantOccupancyMask(int square, int[] directions) {
+        long mask = 0L;
+        for (int direction : directions) {
+            int current = square;
+            while (true) {
+                int next = current + direction;
+                if (!isStep(current, next)) break;
+                int following = next + direction;
+                if (!isStep(next, following)) break;
+                mask |= 1L << next;
+                current = next;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Walks every ray square by square. Only used to build the tables.
+     */
+    private static long slowAttacks(int square, long occupancy, int[] directions) {
+        long attacks = 0L;
+        for (int direction : directions) {
+            int current = square;
+            while (true) {
+                int next = current + direction;
+                if (!isStep(current, next)) break;
+                attacks |= 1L << next;
+                if ((occupancy & (1L << next)) != 0) break;
+                current = next;
+            }
+        }
+        return attacks;
+    }
+
+    private static boolean isStep(int from, int to) {
+        return to >= 0 && to < 64 && Math.abs((from & 7) - (to & 7)) <= 1;
+    }
+}
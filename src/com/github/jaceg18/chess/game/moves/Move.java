@@ -1,52 +1,49 @@
 package com.github.jaceg18.chess.game.moves;
 
+/**
+ * An immutable wrapper around a packed move for code outside the search, such as the GUI.
+ */
 public class Move {
-    long from;
-    long to;
-    boolean isCapture;
-    boolean isWhite;
-    boolean isCastle;
-    public Move(long from, long to, boolean isCapture, boolean isWhite, boolean isCastle){
-        this.from = from;
-        this.to = to;
-        this.isCapture = isCapture;
+    private final int encoded;
+    private final boolean isWhite;
+
+    public Move(int encoded, boolean isWhite){
+        this.encoded = encoded;
         this.isWhite = isWhite;
-        this.isCastle = isCastle;
     }
 
     public long getFrom(){
-        return from;
+        return PackedMove.from(encoded);
     }
 
     public long getTo(){
-        return to;
+        return PackedMove.to(encoded);
     }
     public boolean isCapture(){
-        return isCapture;
+        return PackedMove.isCapture(encoded);
     }
     public boolean isWhite(){
         return isWhite;
     }
     public boolean isCastle(){
-        return isCastle;
+        return PackedMove.isCastle(encoded);
+    }
+    public boolean isPromotion(){
+        return PackedMove.isPromotion(encoded);
+    }
+
+    /**
+     * @return The packed int form of this move
+     */
+    public int getEncoded(){
+        return encoded;
     }
 
     @Override
     public String toString(){
-        return "From: " + from + " To:" + to;
+        return "From: " + getFrom() + " To:" + getTo();
     }
     public String toNotation() {
-        // Convert the bitboard positions to algebraic notation
-        return bitToAlgebraic(from) + bitToAlgebraic(to);
-    }
-
-    private static String bitToAlgebraic(long bit) {
-        // Find the index (0-63) of the bit that is set
-        int index = Long.numberOfTrailingZeros(bit);
-        // Calculate row and column from index
-        int row = index / 8;
-        int column = index % 8;
-        // Convert to algebraic notation
-        return "" + (char)('a' + column) + (row + 1);
+        return PackedMove.toNotation(encoded);
     }
 }
@@ -0,0 +1,80 @@
+package com.github.jaceg18.chess.game.moves;
+
+/**
+ * A reusable, fixed capacity list of packed moves with a parallel array of ordering scores.
+ * The search keeps one buffer per ply so generating moves never allocates.
+ */
+public class MoveBuffer {
+    // No legal chess position has more than 218 moves
+    public static final int CAPACITY = 256;
+
+    private final int[] moves = new int[CAPACITY];
+    private final int[] scores = new int[CAPACITY];
+    private int size;
+
+    public void add(int move) {
+        moves[size++] = move;
+    }
+
+    public int get(int index) {
+        return moves[index];
+    }
+
+    public int getScore(int index) {
+        return scores[index];
+    }
+
+    public void setScore(int index, int score) {
+        scores[index] = score;
+    }
+
+    /**
+     * Swaps two moves along with their scores
+     */
+    public void swap(int a, int b) {
+        int move = moves[a];
+        moves[a] = moves[b];
+        moves[b] = move;
+        int score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+
+    /**
+     * One step of a selection sort: moves the highest scored move at or after index to index.
+     * Picking moves this way only sorts as far as the search actually gets before a cutoff.
+     * @param index The first unsorted position
+     */
+    public void pickBest(int index) {
+        int best = index;
+        for (int i = index + 1; i < size; i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        if (best != index) {
+            swap(index, best);
+        }
+    }
+
+    /**
+     * Sorts the whole buffer by score, highest first
+     */
+    public void sortByScore() {
+        for (int i = 0; i < size - 1; i++) {
+            pickBest(i);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+}
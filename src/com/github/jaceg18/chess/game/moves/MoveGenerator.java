@@ -1,51 +1,235 @@
 package com.github.jaceg18.chess.game.moves;
 
 import com.github.jaceg18.chess.game.Bitboard;
+import com.github.jaceg18.chess.game.attacks.AttackTables;
+import com.github.jaceg18.chess.game.attacks.MagicBitboards;
 import com.github.jaceg18.chess.game.moves.strategy.OrderingStrategy;
+import com.github.jaceg18.chess.game.moves.strategy.SearchContext;
 import com.github.jaceg18.chess.game.pieces.PieceType;
-import com.github.jaceg18.chess.util.BitboardUtils;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class MoveGenerator {
-    // En passant and promotions aren't implemented yet.
-    private static final int[] KING_DIRECTIONS = {-9, -8, -7, -1, 1, 7, 8, 9};
-    private static final int[] KNIGHT_DIRECTIONS = {-17, -15, -10, -6, 6, 10, 15, 17};
-    private OrderingStrategy orderingStrategy; // not yet implemented
+    private static final long WHITE_PROMOTION_ROW = 0x00000000000000FFL;
+    private static final long BLACK_PROMOTION_ROW = 0xFF00000000000000L;
+
+    private OrderingStrategy orderingStrategy;
+    // The tables of the search using this generator, null outside a search
+    private SearchContext searchContext;
     private final Bitboard bitboard;
+    // The buffer moves are currently being generated into
+    private MoveBuffer moves;
+
+    // Legality masks for the side being generated, refreshed once per position by computeLegalityMasks
+    private int kingSquare;
+    private long checkMask;
+    private long pinnedPieces;
+    // What the current generation produces, and the squares its piece moves may come from and land on
+    private GenerationMode mode;
+    private long sourceMask;
+    private long targetMask;
+    // A buffer for checking single moves, so isLegal doesn't clobber the caller's buffer
+    private final MoveBuffer scratchMoves = new MoveBuffer();
+
+    private enum GenerationMode {
+        ALL,
+        // Captures, en passant and queen promotions
+        CAPTURES,
+        // Everything CAPTURES leaves out: quiet moves, castling and underpromotions
+        QUIETS
+    }
+
     public MoveGenerator(Bitboard bitboard, OrderingStrategy orderingStrategy){
         this.orderingStrategy = orderingStrategy;
         this.bitboard = bitboard;
     }
+
+    public OrderingStrategy getOrderingStrategy() {
+        return orderingStrategy;
+    }
+
+    /**
+     * Hands the ordering strategy the killer, history and countermove tables of the search using this generator
+     * @param searchContext The search's tables, or null
+     */
+    public void setSearchContext(SearchContext searchContext) {
+        this.searchContext = searchContext;
+    }
+
+    /**
+     * Generates all legal piece moves into a reusable buffer and orders them
+     * @param isWhite Are we looking for white or black moves?
+     * @param buffer The buffer to fill, cleared first
+     */
+    public void generateMoves(boolean isWhite, MoveBuffer buffer) {
+        generate(isWhite, buffer, GenerationMode.ALL, ~0L);
+    }
+
+    /**
+     * Generates the legal captures, en passant captures and queen promotions, for the quiescence search.
+     * The moves are scored but left unsorted, for the caller to pick with MoveBuffer.pickBest.
+     * @param isWhite Are we looking for white or black moves?
+     * @param buffer The buffer to fill, cleared first
+     */
+    public void generateCaptures(boolean isWhite, MoveBuffer buffer) {
+        generate(isWhite, buffer, GenerationMode.CAPTURES, ~0L);
+    }
+
+    /**
+     * Generates every legal move generateCaptures leaves out: quiet moves, castling and underpromotions.
+     * Together the two produce exactly the moves of generateMoves, so a staged search can put off the quiet moves.
+     * The moves are scored but left unsorted, like generateCaptures.
+     * @param isWhite Are we looking for white or black moves?
+     * @param buffer The buffer to fill, cleared first
+     */
+    public void generateQuiets(boolean isWhite, MoveBuffer buffer) {
+        generate(isWhite, buffer, GenerationMode.QUIETS, ~0L);
+    }
+
+    /**
+     * Checks a move from somewhere other than the generator, like the transposition table or a killer slot,
+     * by generating the moves of the one piece on its source square
+     * @param isWhite The side to move
+     * @param move The packed move
+     * @return Is the move legal in the current position?
+     */
+    public boolean isLegal(boolean isWhite, int move) {
+        PieceType piece = bitboard.getPieceAtSquare(PackedMove.from(move), isWhite);
+        if (piece == null) {
+            return false;
+        }
+        MoveBuffer callerMoves = moves;
+        generate(isWhite, scratchMoves, GenerationMode.ALL, 1L << PackedMove.from(move));
+        moves = callerMoves;
+        for (int i = 0; i < scratchMoves.size(); i++) {
+            if (scratchMoves.get(i) == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void generate(boolean isWhite, MoveBuffer buffer, GenerationMode mode, long sourceMask) {
+        moves = buffer;
+        moves.clear();
+        this.mode = mode;
+        this.sourceMask = sourceMask;
+        long opponentPieces = isWhite ? bitboard.getBlackPieces() : bitboard.getWhitePieces();
+        this.targetMask = mode == GenerationMode.CAPTURES ? opponentPieces
+                : mode == GenerationMode.QUIETS ? ~bitboard.getOccupiedSquares()
+                : ~0L;
+        computeLegalityMasks(isWhite);
+
+        // In double check only the king can move
+        if (checkMask != 0) {
+            generatePawnMoves(isWhite);
+            generateKnightMoves(isWhite);
+            generateBishopMoves(isWhite);
+            generateRookMoves(isWhite);
+            generateQueenMoves(isWhite);
+        }
+        generateKingMoves(isWhite);
+
+        if (sourceMask != ~0L) {
+            // A single piece's moves are only checked, never searched
+            return;
+        }
+        if (mode == GenerationMode.ALL) {
+            orderingStrategy.orderMoves(bitboard, moves, searchContext);
+        } else {
+            orderingStrategy.scoreMoves(bitboard, moves, searchContext);
+        }
+    }
+
     /**
-     * Generates all piece moves
+     * Generates all legal piece moves as Move objects, for callers outside the search
      * @param isWhite Are we looking for white or black moves?
      * @return A list of moves
      */
     public List<Move> generateMoves(boolean isWhite) {
-        bitboard.clearMoveList();
+        MoveBuffer buffer = new MoveBuffer();
+        generateMoves(isWhite, buffer);
+        return toMoveList(buffer, isWhite);
+    }
 
-        generatePawnMoves(isWhite);
-        generateKnightMoves(isWhite);
-        generateBishopMoves(isWhite);
-        generateRookMoves(isWhite);
-        generateQueenMoves(isWhite);
-        generateKingMoves(isWhite);
+    /**
+     * Finds the pieces giving check and the pieces pinned to our king, so every other generator can filter
+     * its targets with a mask instead of making each move and testing for check.
+     * checkMask holds the squares a non-king move must land on: everything when not in check, the checker and the
+     * squares between it and the king in single check, and nothing in double check.
+     * @param isWhite The side we are generating moves for
+     */
+    private void computeLegalityMasks(boolean isWhite) {
+        long ownPieces = isWhite ? bitboard.getWhitePieces() : bitboard.getBlackPieces();
+        long opponentPieces = isWhite ? bitboard.getBlackPieces() : bitboard.getWhitePieces();
+        long occupied = bitboard.getOccupiedSquares();
+        kingSquare = Long.numberOfTrailingZeros(isWhite ? bitboard.getWhiteKing() : bitboard.getBlackKing());
+
+        long checkers = bitboard.attackersTo(kingSquare, occupied) & opponentPieces;
+        if (checkers == 0) {
+            checkMask = ~0L;
+        } else if ((checkers & (checkers - 1)) == 0) {
+            checkMask = checkers | AttackTables.between(kingSquare, Long.numberOfTrailingZeros(checkers));
+        } else {
+            checkMask = 0L;
+        }
 
-        return orderingStrategy.orderMoves(bitboard.getMoveList()); // Return a copy of the move list
+        // Enemy sliders that would see our king if only our own pieces were out of the way
+        long opponentRooksQueens = isWhite ? bitboard.getBlackRooks() | bitboard.getBlackQueens() : bitboard.getWhiteRooks() | bitboard.getWhiteQueens();
+        long opponentBishopsQueens = isWhite ? bitboard.getBlackBishops() | bitboard.getBlackQueens() : bitboard.getWhiteBishops() | bitboard.getWhiteQueens();
+        long snipers = (MagicBitboards.rookAttacks(kingSquare, opponentPieces) & opponentRooksQueens)
+                | (MagicBitboards.bishopAttacks(kingSquare, opponentPieces) & opponentBishopsQueens);
+
+        pinnedPieces = 0L;
+        while (snipers != 0) {
+            long blockers = AttackTables.between(kingSquare, Long.numberOfTrailingZeros(snipers)) & occupied;
+            if ((blockers & (blockers - 1)) == 0 && (blockers & ownPieces) != 0) {
+                pinnedPieces |= blockers;
+            }
+            snipers &= snipers - 1;
+        }
     }
 
     /**
-     * Generates pawn moves, temporarily leaving out promotions and en passant
+     * Gets the squares a piece may legally move to, leaving out its own pieces and any square that would expose our king
+     * @param fromSquare The square the piece is on
+     * @param targets The squares the piece attacks
+     * @param isWhite Is the piece white?
+     * @return The legal target squares
+     */
+    private long legalTargets(int fromSquare, long targets, boolean isWhite) {
+        return legalTargets(fromSquare, targets, isWhite, targetMask);
+    }
+
+    /**
+     * @param targetMask The squares this generation wants moves to
+     */
+    private long legalTargets(int fromSquare, long targets, boolean isWhite, long targetMask) {
+        targets &= ~(isWhite ? bitboard.getWhitePieces() : bitboard.getBlackPieces()) & checkMask & targetMask;
+        if ((pinnedPieces & (1L << fromSquare)) != 0) {
+            // A pinned piece may only slide along the pin
+            targets &= AttackTables.line(kingSquare, fromSquare);
+        }
+        return targets;
+    }
+
+    /**
+     * Generates pawn moves, including promotions and en passant
      * @param isWhite Are we looking for white or black pawn moves?
      */
     private void generatePawnMoves(boolean isWhite) {
-        long pawns = isWhite ? bitboard.getWhitePawns() : bitboard.getBlackPawns();
+        long allPawns = (isWhite ? bitboard.getWhitePawns() : bitboard.getBlackPawns()) & sourceMask;
+        long pawns = allPawns & ~pinnedPieces;
         long emptySquares = ~bitboard.getOccupiedSquares();
         long singleMoves, doubleMoves;
         int direction = isWhite ? 8 : -8;
         long doubleMoveRowMask = isWhite ? 0x0000FF0000000000L : 0x0000000000FF0000L;
+        if (mode == GenerationMode.CAPTURES) {
+            // Of the pushes only promotions change the material balance
+            emptySquares &= isWhite ? WHITE_PROMOTION_ROW : BLACK_PROMOTION_ROW;
+            doubleMoveRowMask = 0L;
+        }
 
         // Single step moves
         singleMoves = isWhite ? (pawns >>> 8) & emptySquares : (pawns << 8) & emptySquares;
@@ -55,11 +239,29 @@ public class MoveGenerator {
                 ((singleMoves & doubleMoveRowMask) << 8) & emptySquares;
 
         // Add moves to the list
-        bitboard.addMoves(singleMoves, direction, isWhite);
-        bitboard.addMoves(doubleMoves, direction * 2, isWhite);
+        addPawnPushes(singleMoves & checkMask, direction, PackedMove.QUIET, isWhite);
+        addPawnPushes(doubleMoves & checkMask, direction * 2, PackedMove.DOUBLE_PAWN_PUSH, isWhite);
+
+        // Pinned pawns are rare, so their pushes are generated one pawn at a time
+        long pinnedPawns = allPawns & pinnedPieces;
+        while (pinnedPawns != 0) {
+            int fromSquare = Long.numberOfTrailingZeros(pinnedPawns);
+            long pin = AttackTables.line(kingSquare, fromSquare);
+            int singleSquare = fromSquare - direction;
+            if ((emptySquares & (1L << singleSquare)) != 0) {
+                addPawnPushes((1L << singleSquare) & pin & checkMask, direction, PackedMove.QUIET, isWhite);
+                if ((doubleMoveRowMask & (1L << singleSquare)) != 0) {
+                    addPawnPushes((1L << (singleSquare - direction)) & emptySquares & pin & checkMask, direction * 2, PackedMove.DOUBLE_PAWN_PUSH, isWhite);
+                }
+            }
+            pinnedPawns &= pinnedPawns - 1;
+        }
 
         // Captures to the left and right
-        generatePawnCaptures(pawns, isWhite);
+        generatePawnCaptures(allPawns, isWhite);
+        if (mode != GenerationMode.QUIETS) {
+            generateEnPassant(allPawns, isWhite);
+        }
     }
 
     /**
@@ -68,21 +270,93 @@ public class MoveGenerator {
      * @param isWhite Are the pawns white?
      */
     private void generatePawnCaptures(long pawns, boolean isWhite) {
-        long opponentPieces = isWhite ? bitboard.getBlackPieces() : bitboard.getWhitePieces();
-        for (int fromSquare = 0; fromSquare < 64; fromSquare++) {
-            if ((pawns & (1L << fromSquare)) != 0) {
-                int leftCaptureSquare = fromSquare + (isWhite ? -9 : 7);
-                int rightCaptureSquare = fromSquare + (isWhite ? -7 : 9);
-
-                if (BitboardUtils.isSquareOnBoard(leftCaptureSquare) && !BitboardUtils.isEdgeWrap(fromSquare, leftCaptureSquare) && (opponentPieces & (1L << leftCaptureSquare)) != 0) {
-                    bitboard.addMove(fromSquare, leftCaptureSquare, isWhite);
+        long promotionRow = isWhite ? WHITE_PROMOTION_ROW : BLACK_PROMOTION_ROW;
+        // The quiet moves only keep the underpromotions among the captures
+        long opponentPieces = (isWhite ? bitboard.getBlackPieces() : bitboard.getWhitePieces())
+                & (mode == GenerationMode.QUIETS ? promotionRow : ~0L);
+        while (pawns != 0) {
+            int fromSquare = Long.numberOfTrailingZeros(pawns);
+            long targets = legalTargets(fromSquare, AttackTables.pawnAttacks(fromSquare, isWhite) & opponentPieces, isWhite, ~0L);
+            while (targets != 0) {
+                int to = Long.numberOfTrailingZeros(targets);
+                if (((1L << to) & promotionRow) != 0) {
+                    addPromotions(fromSquare, to, PackedMove.CAPTURE);
+                } else {
+                    moves.add(PackedMove.encode(fromSquare, to, PackedMove.CAPTURE));
                 }
+                targets &= targets - 1;
+            }
+            pawns &= pawns - 1;
+        }
+    }
 
-                // Check for right capture
-                if (BitboardUtils.isSquareOnBoard(rightCaptureSquare) && !BitboardUtils.isEdgeWrap(fromSquare, rightCaptureSquare) && (opponentPieces & (1L << rightCaptureSquare)) != 0) {
-                    bitboard.addMove(fromSquare, rightCaptureSquare, isWhite);
-                }
+    /**
+     * Generates en passant captures. Removing two pawns from one row can expose the king along that row,
+     * which the pin masks can't see, so these few moves are checked by making them.
+     * @param pawns Pawns bitboard
+     * @param isWhite Are the pawns white?
+     */
+    private void generateEnPassant(long pawns, boolean isWhite) {
+        int enPassantSquare = bitboard.getEnPassantSquare();
+        if (enPassantSquare == -1) return;
+
+        // Our pawns that could capture onto the square are the ones an enemy pawn there would attack
+        long capturers = pawns & AttackTables.pawnAttacks(enPassantSquare, !isWhite);
+        while (capturers != 0) {
+            int move = PackedMove.encode(Long.numberOfTrailingZeros(capturers), enPassantSquare, PackedMove.EN_PASSANT);
+            if (!bitboard.isKingInCheckAfterMove(move, isWhite)) {
+                moves.add(move);
+            }
+            capturers &= capturers - 1;
+        }
+    }
+
+    /**
+     * Adds pawn pushes from a bitboard of target squares, expanding pushes onto the last row into promotions
+     * @param targets The target squares
+     * @param offset The distance from each target back to its pawn
+     * @param flags The move flags for a push that doesn't promote
+     * @param isWhite Are the pawns white?
+     */
+    private void addPawnPushes(long targets, int offset, int flags, boolean isWhite) {
+        long promotionRow = isWhite ? WHITE_PROMOTION_ROW : BLACK_PROMOTION_ROW;
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            if (((1L << to) & promotionRow) != 0) {
+                addPromotions(to + offset, to, PackedMove.QUIET);
+            } else {
+                moves.add(PackedMove.encode(to + offset, to, flags));
             }
+            targets &= targets - 1;
+        }
+    }
+
+    /**
+     * Adds all four promotions of a pawn move, queen first. The queen promotion belongs to the captures,
+     * the underpromotions to the quiet moves.
+     */
+    private void addPromotions(int from, int to, int captureFlag) {
+        if (mode != GenerationMode.QUIETS) {
+            moves.add(PackedMove.encode(from, to, PackedMove.QUEEN_PROMOTION | captureFlag));
+        }
+        if (mode == GenerationMode.CAPTURES) return;
+        moves.add(PackedMove.encode(from, to, PackedMove.KNIGHT_PROMOTION | captureFlag));
+        moves.add(PackedMove.encode(from, to, PackedMove.ROOK_PROMOTION | captureFlag));
+        moves.add(PackedMove.encode(from, to, PackedMove.BISHOP_PROMOTION | captureFlag));
+    }
+
+    /**
+     * Adds a move from one square to every target square, flagging captures
+     * @param from The square the piece is on
+     * @param targets The target squares
+     * @param isWhite Is the piece white?
+     */
+    private void addMovesFromBitboard(int from, long targets, boolean isWhite) {
+        long opponentPieces = isWhite ? bitboard.getBlackPieces() : bitboard.getWhitePieces();
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            moves.add(PackedMove.encode(from, to, ((1L << to) & opponentPieces) != 0 ? PackedMove.CAPTURE : PackedMove.QUIET));
+            targets &= targets - 1;
         }
     }
 
@@ -91,7 +365,8 @@ public class MoveGenerator {
      * @param isWhite The given color to generate knight moves for
      */
     private void generateKnightMoves(boolean isWhite) {
-        long knights = isWhite ? bitboard.getWhiteKnights() : bitboard.getBlackKnights();
+        // A pinned knight can never stay on the pin line
+        long knights = (isWhite ? bitboard.getWhiteKnights() : bitboard.getBlackKnights()) & ~pinnedPieces & sourceMask;
         long potentialMoves, fromBitboard;
         int fromSquare;
 
@@ -101,9 +376,9 @@ public class MoveGenerator {
         while (knights != 0) {
             fromSquare = Long.numberOfTrailingZeros(knights);
             fromBitboard = 1L << fromSquare;
-            potentialMoves = knightMoveTargets(fromSquare, isWhite, whitePieces, blackPieces) & ~(isWhite ? whitePieces : blackPieces);
+            potentialMoves = legalTargets(fromSquare, knightMoveTargets(fromSquare, isWhite, whitePieces, blackPieces), isWhite);
 
-            bitboard.addMovesFromBitboard(BitboardUtils.bitboardToSquareIndex(fromBitboard), potentialMoves, isWhite);
+            addMovesFromBitboard(fromSquare, potentialMoves, isWhite);
 
             // Clear this knight from the knights bitboard.
             knights &= ~fromBitboard;
@@ -115,16 +390,16 @@ public class MoveGenerator {
      * @param isWhite Are we looking for white or black moves?
      */
     private void generateBishopMoves(boolean isWhite) {
-        long bishops = isWhite ? bitboard.getWhiteBishops() : bitboard.getBlackBishops();
+        long bishops = (isWhite ? bitboard.getWhiteBishops() : bitboard.getBlackBishops()) & sourceMask;
         long potentialMoves, fromBitboard;
         int fromSquare;
 
         while (bishops != 0) {
             fromSquare = Long.numberOfTrailingZeros(bishops);
             fromBitboard = 1L << fromSquare;
-            potentialMoves = slidingMoveTargets(fromSquare, isWhite, true) & ~(isWhite ? bitboard.getWhitePieces() : bitboard.getBlackPieces());
+            potentialMoves = legalTargets(fromSquare, MagicBitboards.bishopAttacks(fromSquare, bitboard.getOccupiedSquares()), isWhite);
 
-            bitboard.addMovesFromBitboard(BitboardUtils.bitboardToSquareIndex(fromBitboard), potentialMoves, isWhite);
+            addMovesFromBitboard(fromSquare, potentialMoves, isWhite);
 
             // Clear this bishop from the bishops bitboard.
             bishops &= ~fromBitboard;
@@ -135,16 +410,16 @@ public class MoveGenerator {
      * @param isWhite Are we looking for white or black moves?
      */
     private void generateRookMoves(boolean isWhite) {
-        long rooks = isWhite ? bitboard.getWhiteRooks() : bitboard.getBlackRooks();
+        long rooks = (isWhite ? bitboard.getWhiteRooks() : bitboard.getBlackRooks()) & sourceMask;
         long potentialMoves, fromBitboard;
         int fromSquare;
 
         while (rooks != 0) {
             fromSquare = Long.numberOfTrailingZeros(rooks);
             fromBitboard = 1L << fromSquare;
-            potentialMoves = slidingMoveTargets(fromSquare, isWhite, false) & ~(isWhite ? bitboard.getWhitePieces() : bitboard.getBlackPieces());
+            potentialMoves = legalTargets(fromSquare, MagicBitboards.rookAttacks(fromSquare, bitboard.getOccupiedSquares()), isWhite);
 
-            bitboard.addMovesFromBitboard(BitboardUtils.bitboardToSquareIndex(fromBitboard), potentialMoves, isWhite);
+            addMovesFromBitboard(fromSquare, potentialMoves, isWhite);
 
             // Clear this rook from the rooks bitboard.
             rooks &= ~fromBitboard;
@@ -155,7 +430,7 @@ public class MoveGenerator {
      * @param isWhite Are we looking for white or black moves?
      */
     private void generateQueenMoves(boolean isWhite) {
-        long queens = isWhite ? bitboard.getWhiteQueens() : bitboard.getBlackQueens();
+        long queens = (isWhite ? bitboard.getWhiteQueens() : bitboard.getBlackQueens()) & sourceMask;
         long potentialMoves, fromBitboard;
         int fromSquare;
 
@@ -165,12 +440,10 @@ public class MoveGenerator {
         while (queens != 0) {
             fromSquare = Long.numberOfTrailingZeros(queens);
             fromBitboard = 1L << fromSquare;
-            // Combine rook and bishop moves for the queen
-            potentialMoves = (slidingMoveTargets(fromSquare, isWhite, true) & ~(isWhite ? whitePieces : blackPieces) |
-                    slidingMoveTargets(fromSquare, isWhite, false)) &
-                    ~(isWhite ? whitePieces : blackPieces);
+            // Queen attacks are the union of rook and bishop attacks
+            potentialMoves = legalTargets(fromSquare, MagicBitboards.queenAttacks(fromSquare, whitePieces | blackPieces), isWhite);
 
-            bitboard.addMovesFromBitboard(BitboardUtils.bitboardToSquareIndex(fromBitboard), potentialMoves, isWhite);
+            addMovesFromBitboard(fromSquare, potentialMoves, isWhite);
 
             // Clear this queen from the queens bitboard.
             queens &= ~fromBitboard;
@@ -182,152 +455,100 @@ public class MoveGenerator {
      */
     private void generateKingMoves(boolean isWhite) {
         long king = isWhite ? bitboard.getWhiteKing() : bitboard.getBlackKing();
+        if ((king & sourceMask) == 0) return;
         int fromSquare = Long.numberOfTrailingZeros(king);
 
         long whitePieces = bitboard.getWhitePieces();
         long blackPieces = bitboard.getBlackPieces();
 
-        // Generate normal king moves
-        long potentialMoves = kingMoveTargets(fromSquare, isWhite, whitePieces, blackPieces) & ~(isWhite ? whitePieces : blackPieces);
+        // Generate normal king moves, the king is lifted off the board so it can't hide behind itself from a slider
+        long potentialMoves = kingMoveTargets(fromSquare, isWhite, whitePieces, blackPieces) & targetMask;
+        long occupiedWithoutKing = (whitePieces | blackPieces) & ~king;
+        long targets = potentialMoves;
+        while (targets != 0) {
+            int targetSquare = Long.numberOfTrailingZeros(targets);
+            if (bitboard.isSquareAttacked(targetSquare, isWhite, occupiedWithoutKing)) {
+                potentialMoves &= ~(1L << targetSquare);
+            }
+            targets &= targets - 1;
+        }
 
         // Add normal king moves to the move list
-        bitboard.addMovesFromBitboard(BitboardUtils.bitboardToSquareIndex((1L << fromSquare)), potentialMoves, isWhite);
+        addMovesFromBitboard(fromSquare, potentialMoves, isWhite);
 
         long castlingRights = bitboard.getCastlingRights();
+        // The rights should never outlive their rook, but a castle without one would corrupt the board
+        long rooks = isWhite ? bitboard.getWhiteRooks() : bitboard.getBlackRooks();
 
         // Adjusted castling logic considering the board setup
+        if (checkMask != ~0L || mode == GenerationMode.CAPTURES) {
+            // Can't castle out of check
+            return;
+        }
         if (isWhite) {
             // White's castling logic
             // White king-side castling check corrected
             if ((castlingRights & 0b0100) != 0 && // Check if white king-side castling is available
+                    (rooks & 1L << 63) != 0 && // The rook is still in its corner
                     ((whitePieces | blackPieces) & (1L << 61 | 1L << 62)) == 0 && // Correctly checks if squares between king and rook are empty
                     !bitboard.isSquareAttacked(60, true) && !bitboard.isSquareAttacked(61, true) && !bitboard.isSquareAttacked(62, true)) { // Check if king passes through or ends in check
                 // Add white king-side castling move
-                bitboard.addMove(fromSquare, 62, true);
+                moves.add(PackedMove.encode(fromSquare, 62, PackedMove.KING_CASTLE));
             }
 
             if ((castlingRights & 0b1000) != 0 && // White queen-side castling is available
+                    (rooks & 1L << 56) != 0 && // The rook is still in its corner
                     ((whitePieces | blackPieces) & (1L << 57 | 1L << 58 | 1L << 59)) == 0 && // Squares between king and rook are empty
                     !bitboard.isSquareAttacked(60, true) && !bitboard.isSquareAttacked(59, true) && !bitboard.isSquareAttacked(58, true)) { // King does not pass through or end in check
                 // Add white queen-side castling move
-                bitboard.addMove(fromSquare, 58, true);
+                moves.add(PackedMove.encode(fromSquare, 58, PackedMove.QUEEN_CASTLE));
             }
         } else {
             // Black's castling logic
             if ((castlingRights & 0b0010) != 0 && // Black king-side castling is available
+                    (rooks & 1L << 7) != 0 && // The rook is still in its corner
                     ((whitePieces | blackPieces) & (1L << 5 | 1L << 6)) == 0 && // Squares between king and rook are empty
                     !bitboard.isSquareAttacked(4, false) && !bitboard.isSquareAttacked(5, false) && !bitboard.isSquareAttacked(6, false)) { // King does not pass through or end in check
                 // Add black king-side castling move
-                bitboard.addMove(fromSquare, 6, false);
+                moves.add(PackedMove.encode(fromSquare, 6, PackedMove.KING_CASTLE));
             }
             if ((castlingRights & 0b0001) != 0 && // Black queen-side castling is available
+                    (rooks & 1L << 0) != 0 && // The rook is still in its corner
                     ((whitePieces | blackPieces) & (1L << 1 | 1L << 2 | 1L << 3)) == 0 && // Squares between king and rook are empty
                     !bitboard.isSquareAttacked(4, false) && !bitboard.isSquareAttacked(3, false) && !bitboard.isSquareAttacked(2, false)) { // King does not pass through or end in check
                 // Add black queen-side castling move
-                bitboard.addMove(fromSquare, 2, false);
-            }
-        }
-    }
-
-    /**
-     * Helper method too get sliding moves
-     * @param square The current square
-     * @param isWhite Is the piece white?
-     * @param isBishop Is this a bishop or a rook?
-     * @return A long containing the sliding moves
-     */
-    private long slidingMoveTargets(int square, boolean isWhite, boolean isBishop) {
-        long moves = 0L;
-        int[] directions = isBishop ? new int[]{-9, -7, 7, 9} : new int[]{-8, -1, 1, 8};
-        for (int direction : directions) {
-            int currentSquare = square;
-            while (true) {
-                int nextSquare = currentSquare + direction;
-
-                if (!BitboardUtils.isSquareOnBoard(nextSquare) || BitboardUtils.isEdgeWrap(currentSquare, nextSquare)) {
-                    break;
-                }
-
-                moves |= 1L << nextSquare;
-
-                if ((bitboard.getOccupiedSquares() & (1L << nextSquare)) != 0) {
-                    break;
-                }
-
-                currentSquare = nextSquare;
+                moves.add(PackedMove.encode(fromSquare, 2, PackedMove.QUEEN_CASTLE));
             }
         }
-
-        return moves;
     }
 
     /**
-     * A slow method that generates moves for a given piece.
+     * Generates the moves of the piece on one square.
      * This is only used for highlighting legal move squares in the GamePanel
      * @param square The square we are checking
      * @param isWhite Are we looking for white or black moves?
      * @return A list of moves from a given piece.
      */
     public List<Move> generateMovesForPieceAtSquare(int square, boolean isWhite) {
-        List<Move> specificMoves = new ArrayList<>();
-        PieceType pieceType = bitboard.getPieceAtSquare(square, isWhite);
-
-        List<Move> originalMoveList = new ArrayList<>(bitboard.getMoveList());
-
-        bitboard.clearMoveList();
-
-        switch (pieceType) {
-            case WHITE_PAWN, BLACK_PAWN -> generatePawnMoves(isWhite);
-            case WHITE_KNIGHT, BLACK_KNIGHT -> generateKnightMoves(isWhite);
-            case WHITE_BISHOP, BLACK_BISHOP -> generateBishopMoves(isWhite);
-            case WHITE_ROOK, BLACK_ROOK -> generateRookMoves(isWhite);
-            case WHITE_QUEEN, BLACK_QUEEN -> generateQueenMoves(isWhite);
-            case WHITE_KING, BLACK_KING -> generateKingMoves(isWhite);
-            default -> {
-                System.out.println("Couldn't find any moves for piece type");
-            }
-        }
-        for (Move move : bitboard.getMoveList()) {
-            if (move.getFrom() == square) {
-                specificMoves.add(move);
-            }
-        }
-        bitboard.clearMoveList();
-        bitboard.addAllToMoveList(originalMoveList);
-
-        return specificMoves;
+        MoveBuffer buffer = new MoveBuffer();
+        generate(isWhite, buffer, GenerationMode.ALL, 1L << square);
+        return toMoveList(buffer, isWhite);
     }
 
-    public static long knightMoveTargets(int square, boolean isWhite, long whitePieces, long blackPieces) {
-        long targets = 0L;
-        for (int direction : KNIGHT_DIRECTIONS) {
-            int targetSquare = square + direction;
-            if (BitboardUtils.isSquareOnBoard(targetSquare)) {
-                int abs = Math.abs(targetSquare % 8 - square % 8);
-                int abs1 = Math.abs(targetSquare / 8 - square / 8);
-                if (abs == 2 && abs1 == 1
-                        || abs == 1 && abs1 == 2) {
-                    targets |= 1L << targetSquare;
-                }
-            }
+    private static List<Move> toMoveList(MoveBuffer buffer, boolean isWhite) {
+        List<Move> moveList = new ArrayList<>(buffer.size());
+        for (int i = 0; i < buffer.size(); i++) {
+            moveList.add(new Move(buffer.get(i), isWhite));
         }
-        targets &= isWhite ? ~whitePieces : ~blackPieces;
-
-        return targets;
+        return moveList;
     }
-    public static long kingMoveTargets(int square, boolean isWhite, long whitePieces, long blackPieces) {
-        long targets = 0L;
-
-        for (int direction : KING_DIRECTIONS) {
-            int targetSquare = square + direction;
-            if (BitboardUtils.isSquareOnBoard(targetSquare) && !BitboardUtils.isEdgeWrap(square, targetSquare)) {
-                targets |= 1L << targetSquare;
-            }
-        }
 
-        targets &= isWhite ? ~whitePieces : ~blackPieces;
+    public static long knightMoveTargets(int square, boolean isWhite, long whitePieces, long blackPieces) {
+        return AttackTables.knightAttacks(square) & (isWhite ? ~whitePieces : ~blackPieces);
+    }
 
-        return targets;
+    public static long kingMoveTargets(int square, boolean isWhite, long whitePieces, long blackPieces) {
+        return AttackTables.kingAttacks(square) & (isWhite ? ~whitePieces : ~blackPieces);
     }
 
 }
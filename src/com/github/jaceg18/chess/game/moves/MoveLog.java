@@ -2,22 +2,30 @@ package com.github.jaceg18.chess.game.moves;
 
 import com.github.jaceg18.chess.game.pieces.PieceType;
 
+/**
+ * The state needed to undo one move. Bitboard keeps a preallocated stack of these and refills them in place,
+ * so making a move doesn't allocate.
+ */
 public class MoveLog {
-     public final long fromPosition;
-     public final long toPosition;
-     public final PieceType movedPiece;
-     public final PieceType capturedPiece; // Null if no capture
-     public final int castlingRightsBeforeMove;
+     public int move;
+     public PieceType movedPiece;
+     public PieceType capturedPiece; // Null if no capture
+     public int castlingRightsBeforeMove;
+     public int enPassantSquareBeforeMove;
+     public long zobristKeyBeforeMove;
+     public int halfmoveClockBeforeMove;
 
-    public MoveLog(long fromPosition, long toPosition, PieceType movedPiece, PieceType capturedPiece, int castlingRightsBeforeMove) {
-        this.fromPosition = fromPosition;
-        this.toPosition = toPosition;
+    public void set(int move, PieceType movedPiece, PieceType capturedPiece, int castlingRightsBeforeMove, int enPassantSquareBeforeMove, long zobristKeyBeforeMove, int halfmoveClockBeforeMove) {
+        this.move = move;
         this.movedPiece = movedPiece;
         this.capturedPiece = capturedPiece;
         this.castlingRightsBeforeMove = castlingRightsBeforeMove;
+        this.enPassantSquareBeforeMove = enPassantSquareBeforeMove;
+        this.zobristKeyBeforeMove = zobristKeyBeforeMove;
+        this.halfmoveClockBeforeMove = halfmoveClockBeforeMove;
     }
     @Override
     public String toString(){
-        return "From : " + fromPosition + " To: " + toPosition;
+        return "From : " + PackedMove.from(move) + " To: " + PackedMove.to(move);
     }
 }
@@ -0,0 +1,114 @@
+package com.github.jaceg18.chess.game.moves;
+
+/**
+ * Hands the search one move at a time, generating each group of moves only when the one before it is used up:
+ * the hash move first, then captures, then the killer moves, then the remaining quiet moves.
+ * Most nodes that cut off do so on the hash move or a capture and never pay for generating the quiet moves.
+ * The search keeps one picker per ply and re-initialises it for every node, so picking doesn't allocate.
+ */
+public class MovePicker {
+    private static final int STAGE_HASH_MOVE = 0;
+    private static final int STAGE_GENERATE_CAPTURES = 1;
+    private static final int STAGE_CAPTURES = 2;
+    private static final int STAGE_FIRST_KILLER = 3;
+    private static final int STAGE_SECOND_KILLER = 4;
+    private static final int STAGE_GENERATE_QUIETS = 5;
+    private static final int STAGE_QUIETS = 6;
+    private static final int STAGE_DONE = 7;
+
+    private final MoveGenerator moveGenerator;
+    private final MoveBuffer captures = new MoveBuffer();
+    private final MoveBuffer quiets = new MoveBuffer();
+
+    private boolean isWhite;
+    private int hashMove;
+    private int firstKiller;
+    private int secondKiller;
+    private int stage;
+    private int index;
+
+    public MovePicker(MoveGenerator moveGenerator) {
+        this.moveGenerator = moveGenerator;
+    }
+
+    /**
+     * Starts picking moves for a new position
+     * @param isWhite The side to move
+     * @param hashMove The move to try first, usually from the transposition table, or PackedMove.NONE
+     * @param firstKiller A quiet move that caused a cutoff at this ply before, or PackedMove.NONE
+     * @param secondKiller An older killer, or PackedMove.NONE
+     */
+    public void init(boolean isWhite, int hashMove, int firstKiller, int secondKiller) {
+        this.isWhite = isWhite;
+        this.hashMove = hashMove;
+        this.firstKiller = firstKiller;
+        this.secondKiller = secondKiller;
+        this.stage = STAGE_HASH_MOVE;
+    }
+
+    /**
+     * Each stage falls through to the next once it runs out of moves.
+     * @return The next legal move, or PackedMove.NONE once every move has been picked
+     */
+    @SuppressWarnings("fallthrough")
+    public int next() {
+        switch (stage) {
+            case STAGE_HASH_MOVE:
+                stage = STAGE_GENERATE_CAPTURES;
+                // The table can hand us a move from a different position that happens to share the slot, so check it
+                if (hashMove != PackedMove.NONE && moveGenerator.isLegal(isWhite, hashMove)) {
+                    return hashMove;
+                }
+                hashMove = PackedMove.NONE;
+            case STAGE_GENERATE_CAPTURES:
+                moveGenerator.generateCaptures(isWhite, captures);
+                index = 0;
+                stage = STAGE_CAPTURES;
+            case STAGE_CAPTURES:
+                while (index < captures.size()) {
+                    captures.pickBest(index);
+                    int move = captures.get(index++);
+                    if (move != hashMove) {
+                        return move;
+                    }
+                }
+                stage = STAGE_FIRST_KILLER;
+            case STAGE_FIRST_KILLER:
+                stage = STAGE_SECOND_KILLER;
+                if (isUsableKiller(firstKiller)) {
+                    return firstKiller;
+                }
+                firstKiller = PackedMove.NONE;
+            case STAGE_SECOND_KILLER:
+                stage = STAGE_GENERATE_QUIETS;
+                if (secondKiller != firstKiller && isUsableKiller(secondKiller)) {
+                    return secondKiller;
+                }
+                secondKiller = PackedMove.NONE;
+            case STAGE_GENERATE_QUIETS:
+                moveGenerator.generateQuiets(isWhite, quiets);
+                index = 0;
+                stage = STAGE_QUIETS;
+            case STAGE_QUIETS:
+                while (index < quiets.size()) {
+                    quiets.pickBest(index);
+                    int move = quiets.get(index++);
+                    if (move != hashMove && move != firstKiller && move != secondKiller) {
+                        return move;
+                    }
+                }
+                stage = STAGE_DONE;
+            default:
+                return PackedMove.NONE;
+        }
+    }
+
+    /**
+     * Killers are quiet moves from sibling positions, so they are only worth trying if they are legal here
+     * and weren't already picked as the hash move
+     */
+    private boolean isUsableKiller(int killer) {
+        return killer != PackedMove.NONE && killer != hashMove && !PackedMove.isCapture(killer)
+                && !PackedMove.isPromotion(killer) && moveGenerator.isLegal(isWhite, killer);
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.jaceg18.chess.game.moves;
+
+import com.github.jaceg18.chess.game.pieces.PieceType;
+
+/**
+ * Static helpers for moves packed into a single int, so the search can keep moves in plain int arrays.
+ * Bits 0-5 hold the source square, bits 6-11 the target square and bits 12-15 the move flags.
+ * The capture flag is bit 2 of the flags and the promotion flag bit 3, with the promotion piece in the two low bits.
+ * The value 0 (a8 to a8) is never a real move and stands for "no move".
+ */
+public final class PackedMove {
+    public static final int NONE = 0;
+
+    public static final int QUIET = 0;
+    public static final int DOUBLE_PAWN_PUSH = 1;
+    public static final int KING_CASTLE = 2;
+    public static final int QUEEN_CASTLE = 3;
+    public static final int CAPTURE = 4;
+    public static final int EN_PASSANT = 5;
+    public static final int KNIGHT_PROMOTION = 8;
+    public static final int BISHOP_PROMOTION = 9;
+    public static final int ROOK_PROMOTION = 10;
+    public static final int QUEEN_PROMOTION = 11;
+
+    private static final int CAPTURE_BIT = 4;
+    private static final int PROMOTION_BIT = 8;
+    private static final PieceType[] PIECE_TYPES = PieceType.values();
+
+    private PackedMove() {
+    }
+
+    public static int encode(int from, int to, int flags) {
+        return from | (to << 6) | (flags << 12);
+    }
+
+    public static int from(int move) {
+        return move & 0x3F;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 0x3F;
+    }
+
+    public static int flags(int move) {
+        return (move >>> 12) & 0xF;
+    }
+
+    public static boolean isCapture(int move) {
+        return (flags(move) & CAPTURE_BIT) != 0;
+    }
+
+    public static boolean isPromotion(int move) {
+        return (flags(move) & PROMOTION_BIT) != 0;
+    }
+
+    public static boolean isCastle(int move) {
+        int flags = flags(move);
+        return flags == KING_CASTLE || flags == QUEEN_CASTLE;
+    }
+
+    public static boolean isEnPassant(int move) {
+        return flags(move) == EN_PASSANT;
+    }
+
+    /**
+     * Gets the piece a pawn promotes to
+     * @param move The packed move, which must be a promotion
+     * @param isWhite Is the promoting pawn white?
+     * @return The new piece
+     */
+    public static PieceType promotionPiece(int move, boolean isWhite) {
+        PieceType knight = isWhite ? PieceType.WHITE_KNIGHT : PieceType.BLACK_KNIGHT;
+        return PIECE_TYPES[knight.ordinal() + (flags(move) & 3)];
+    }
+
+    /**
+     * Converts a move to coordinate notation such as e2e4 or e7e8q
+     * @param move The packed move
+     * @return The move in coordinate notation
+     */
+    public static String toNotation(int move) {
+        String notation = squareToAlgebraic(from(move)) + squareToAlgebraic(to(move));
+        if (isPromotion(move)) {
+            notation += "nbrq".charAt(flags(move) & 3);
+        }
+        return notation;
+    }
+
+    /**
+     * Converts a square index to algebraic notation. Square 0 is a8 and square 63 is h1.
+     * @param square The square index
+     * @return The square in algebraic notation
+     */
+    public static String squareToAlgebraic(int square) {
+        return "" + (char) ('a' + (square & 7)) + (8 - (square >>> 3));
+    }
+}
@@ -1,33 +1,27 @@
 package com.github.jaceg18.chess.game.moves.strategy;
 
-import com.github.jaceg18.chess.game.moves.Move;
+import com.github.jaceg18.chess.game.Bitboard;
+import com.github.jaceg18.chess.game.moves.MoveBuffer;
+import com.github.jaceg18.chess.game.moves.PackedMove;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class CaptureCastleOrder implements OrderingStrategy {
+    private static final int CAPTURE_OR_CASTLE_SCORE = 1 << 20;
 
     // This orders moves based on captures and castling availability. Good for balance between offense and defense.
+    // The remaining moves get random scores, so they come out shuffled.
     @Override
-    public List<Move> orderMoves(List<Move> moves) {
-        List<Move> orderedMoves = new ArrayList<>(moves.size());
-        List<Move> otherMoves = new ArrayList<>();
-
-        for (Move move : moves) {
-            if (move.isCastle() || move.isCapture()) {
-                orderedMoves.add(move);
+    public void scoreMoves(Bitboard bitboard, MoveBuffer moves) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            if (PackedMove.isCastle(move) || PackedMove.isCapture(move)) {
+                moves.setScore(i, CAPTURE_OR_CASTLE_SCORE);
             } else {
-                otherMoves.add(move);
+                moves.setScore(i, random.nextInt(CAPTURE_OR_CASTLE_SCORE));
             }
         }
-
-        Collections.shuffle(otherMoves);
-
-        orderedMoves.addAll(otherMoves);
-
-        return orderedMoves;
     }
 
 }
@@ -0,0 +1,22 @@
+package com.github.jaceg18.chess.game.moves.strategy;
+
+import com.github.jaceg18.chess.game.Bitboard;
+import com.github.jaceg18.chess.game.moves.MoveBuffer;
+
+/**
+ * Leaves the moves in the order they were generated. For callers that visit every move anyway, like perft,
+ * where ordering would only add its own cost to the generator's.
+ */
+public class GenerationOrder implements OrderingStrategy {
+
+    @Override
+    public void scoreMoves(Bitboard bitboard, MoveBuffer moves) {
+        for (int i = 0; i < moves.size(); i++) {
+            moves.setScore(i, 0);
+        }
+    }
+
+    @Override
+    public void orderMoves(Bitboard bitboard, MoveBuffer moves, SearchContext context) {
+    }
+}
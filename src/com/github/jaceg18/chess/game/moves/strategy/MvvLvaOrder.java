@@ -0,0 +1,64 @@
+package com.github.jaceg18.chess.game.moves.strategy;
+
+import com.github.jaceg18.chess.game.Bitboard;
+import com.github.jaceg18.chess.game.moves.MoveBuffer;
+import com.github.jaceg18.chess.game.moves.PackedMove;
+import com.github.jaceg18.chess.game.pieces.PieceType;
+
+/**
+ * Most Valuable Victim, Least Valuable Attacker: captures first, taking the biggest piece with the smallest piece
+ * first, then queen promotions, then quiet moves by history.
+ */
+public class MvvLvaOrder implements OrderingStrategy {
+    static final int CAPTURE_SCORE = 1 << 20;
+    private static final int QUEEN_PROMOTION_SCORE = 1 << 19;
+    private static final int COUNTER_MOVE_SCORE = SearchContext.MAX_HISTORY + 1;
+
+    @Override
+    public void scoreMoves(Bitboard bitboard, MoveBuffer moves) {
+        scoreMoves(bitboard, moves, null);
+    }
+
+    /**
+     * Quiet moves are ordered by the search's history, with the countermove to the opponent's last move first
+     */
+    @Override
+    public void scoreMoves(Bitboard bitboard, MoveBuffer moves, SearchContext context) {
+        boolean isWhite = bitboard.isWhiteToMove();
+        int counterMove = context == null ? PackedMove.NONE : context.getCounterMove(isWhite, bitboard.getLastMove());
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            if (PackedMove.isCapture(move)) {
+                moves.setScore(i, CAPTURE_SCORE + mvvLva(bitboard, move));
+            } else if (isQueenPromotion(move)) {
+                moves.setScore(i, QUEEN_PROMOTION_SCORE);
+            } else {
+                moves.setScore(i, quietScore(context, isWhite, move, counterMove));
+            }
+        }
+    }
+
+    static int quietScore(SearchContext context, boolean isWhite, int move, int counterMove) {
+        if (context == null) {
+            return 0;
+        }
+        return move == counterMove ? COUNTER_MOVE_SCORE : context.getHistory(isWhite, move);
+    }
+
+    /**
+     * @return A score that grows with the value of the captured piece, and within that shrinks with the value of the capturer
+     */
+    static int mvvLva(Bitboard bitboard, int move) {
+        PieceType victim = PackedMove.isEnPassant(move) ? PieceType.WHITE_PAWN : bitboard.getPieceAtSquare(PackedMove.to(move));
+        PieceType attacker = bitboard.getPieceAtSquare(PackedMove.from(move));
+        // Pieces of one colour are declared pawn to king, so the ordinal within a colour ranks them by value
+        int victimRank = victim == null ? 0 : victim.ordinal() % 6;
+        int attackerRank = attacker.ordinal() % 6;
+        int score = (victimRank + 1) * 8 - attackerRank;
+        return isQueenPromotion(move) ? score + 8 : score;
+    }
+
+    static boolean isQueenPromotion(int move) {
+        return (PackedMove.flags(move) & ~PackedMove.CAPTURE) == PackedMove.QUEEN_PROMOTION;
+    }
+}
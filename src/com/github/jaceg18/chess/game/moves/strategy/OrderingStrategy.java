@@ -1,9 +1,36 @@
 package com.github.jaceg18.chess.game.moves.strategy;
 
-import com.github.jaceg18.chess.game.moves.Move;
-
-import java.util.List;
+import com.github.jaceg18.chess.game.Bitboard;
+import com.github.jaceg18.chess.game.moves.MoveBuffer;
 
 public interface OrderingStrategy {
-    List<Move> orderMoves(List<Move> moves);
+    /**
+     * Gives every move in the buffer an ordering score, higher scores are searched first.
+     * The search picks moves from the scores lazily, so it never sorts moves it doesn't reach.
+     * @param bitboard The position the moves were generated in
+     * @param moves The generated moves
+     */
+    void scoreMoves(Bitboard bitboard, MoveBuffer moves);
+
+    /**
+     * Scores moves using what the search has learned so far. Strategies that can't use the search's
+     * tables score the moves as if there was no search.
+     * @param bitboard The position the moves were generated in
+     * @param moves The generated moves
+     * @param context The search's killer, history and countermove tables, or null outside a search
+     */
+    default void scoreMoves(Bitboard bitboard, MoveBuffer moves, SearchContext context) {
+        scoreMoves(bitboard, moves);
+    }
+
+    /**
+     * Scores the moves and sorts the whole buffer in place, best first
+     * @param bitboard The position the moves were generated in
+     * @param moves The generated moves
+     * @param context The search's tables, or null outside a search
+     */
+    default void orderMoves(Bitboard bitboard, MoveBuffer moves, SearchContext context) {
+        scoreMoves(bitboard, moves, context);
+        moves.sortByScore();
+    }
 }
@@ -0,0 +1,108 @@
+package com.github.jaceg18.chess.game.moves.strategy;
+
+import com.github.jaceg18.chess.game.moves.PackedMove;
+
+import java.util.Arrays;
+
+/**
+ * What the search has learned about quiet moves, for ordering them: killer moves per ply, a butterfly history
+ * table indexed by side, source and target, and the countermove that last refuted each opponent move.
+ * Every table is fed from beta cutoffs. Each search thread owns its own context.
+ */
+public class SearchContext {
+    public static final int MAX_PLY = 128;
+    // History scores stay within plus or minus this, below every capture score
+    public static final int MAX_HISTORY = 16384;
+
+    // Two quiet moves per ply that recently caused a cutoff, newest first
+    private final int[][] killers = new int[MAX_PLY][2];
+    private final int[][][] history = new int[2][64][64];
+    // Indexed by the side to move and the source and target of the opponent's last move
+    private final int[][][] counterMoves = new int[2][64][64];
+
+    public int getKiller(int ply, int slot) {
+        return killers[ply][slot];
+    }
+
+    /**
+     * @return How often the move has caused cutoffs lately, between -MAX_HISTORY and MAX_HISTORY
+     */
+    public int getHistory(boolean isWhite, int move) {
+        return history[isWhite ? 0 : 1][PackedMove.from(move)][PackedMove.to(move)];
+    }
+
+    /**
+     * @param previousMove The opponent's last move, or PackedMove.NONE
+     * @return The quiet move that last refuted it, or PackedMove.NONE
+     */
+    public int getCounterMove(boolean isWhite, int previousMove) {
+        if (previousMove == PackedMove.NONE) {
+            return PackedMove.NONE;
+        }
+        return counterMoves[isWhite ? 0 : 1][PackedMove.from(previousMove)][PackedMove.to(previousMove)];
+    }
+
+    /**
+     * Records a quiet move that caused a beta cutoff. The quiet moves searched before it failed to, so they lose history.
+     * @param previousMove The opponent's move that led to this position, or PackedMove.NONE
+     * @param depth The remaining depth of the node, deeper cutoffs count for more
+     * @param quietsTried The quiet moves searched before the cutoff move
+     * @param quietCount How many entries of quietsTried are used
+     */
+    public void updateCutoff(boolean isWhite, int ply, int move, int previousMove, int depth, int[] quietsTried, int quietCount) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        if (previousMove != PackedMove.NONE) {
+            counterMoves[isWhite ? 0 : 1][PackedMove.from(previousMove)][PackedMove.to(previousMove)] = move;
+        }
+
+        int bonus = Math.min(depth * depth, 400);
+        addHistory(isWhite, move, bonus);
+        for (int i = 0; i < quietCount; i++) {
+            addHistory(isWhite, quietsTried[i], -bonus);
+        }
+    }
+
+    /**
+     * Forgets everything, for a new game
+     */
+    public void clear() {
+        for (int[] plyKillers : killers) {
+            Arrays.fill(plyKillers, PackedMove.NONE);
+        }
+        for (int side = 0; side < 2; side++) {
+            for (int from = 0; from < 64; from++) {
+                Arrays.fill(history[side][from], 0);
+                Arrays.fill(counterMoves[side][from], PackedMove.NONE);
+            }
+        }
+    }
+
+    /**
+     * Forgets the killers, which only apply to the last position searched, and fades the history
+     */
+    public void newSearch() {
+        for (int[] plyKillers : killers) {
+            Arrays.fill(plyKillers, PackedMove.NONE);
+        }
+        for (int[][] sideHistory : history) {
+            for (int[] fromHistory : sideHistory) {
+                for (int to = 0; to < 64; to++) {
+                    fromHistory[to] /= 2;
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves an entry towards the bonus's sign. The closer an entry is to the limit, the less it moves,
+     * so entries never pass MAX_HISTORY and old results fade out.
+     */
+    private void addHistory(boolean isWhite, int move, int bonus) {
+        int[] fromHistory = history[isWhite ? 0 : 1][PackedMove.from(move)];
+        int to = PackedMove.to(move);
+        fromHistory[to] += bonus - fromHistory[to] * Math.abs(bonus) / MAX_HISTORY;
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.jaceg18.chess.game.moves.strategy;
+
+import com.github.jaceg18.chess.game.Bitboard;
+import com.github.jaceg18.chess.game.moves.MoveBuffer;
+import com.github.jaceg18.chess.game.moves.PackedMove;
+
+/**
+ * Orders captures by static exchange evaluation: captures that don't lose material come first in MVV-LVA order,
+ * then queen promotions and quiet moves, and captures that lose material last, least losing first.
+ */
+public class StaticExchangeOrder implements OrderingStrategy {
+    private static final int QUEEN_PROMOTION_SCORE = 1 << 19;
+    // Below every quiet move's history
+    private static final int LOSING_CAPTURE_SCORE = -(1 << 19);
+
+    @Override
+    public void scoreMoves(Bitboard bitboard, MoveBuffer moves) {
+        scoreMoves(bitboard, moves, null);
+    }
+
+    /**
+     * Quiet moves are ordered by the search's history, with the countermove to the opponent's last move first
+     */
+    @Override
+    public void scoreMoves(Bitboard bitboard, MoveBuffer moves, SearchContext context) {
+        boolean isWhite = bitboard.isWhiteToMove();
+        int counterMove = context == null ? PackedMove.NONE : context.getCounterMove(isWhite, bitboard.getLastMove());
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            if (PackedMove.isCapture(move)) {
+                // Most captures don't lose material, and the cheap threshold test settles those
+                moves.setScore(i, bitboard.seeGE(move, 0)
+                        ? MvvLvaOrder.CAPTURE_SCORE + MvvLvaOrder.mvvLva(bitboard, move)
+                        : LOSING_CAPTURE_SCORE + bitboard.see(move));
+            } else if (MvvLvaOrder.isQueenPromotion(move)) {
+                moves.setScore(i, QUEEN_PROMOTION_SCORE);
+            } else {
+                moves.setScore(i, MvvLvaOrder.quietScore(context, isWhite, move, counterMove));
+            }
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.github.jaceg18.chess.ui;
 
 import com.github.jaceg18.chess.audio.AudioPlayer;
 import com.github.jaceg18.chess.engine.Ai;
+import com.github.jaceg18.chess.engine.SearchLimits;
+import com.github.jaceg18.chess.engine.SearchProgress;
 import com.github.jaceg18.chess.game.Bitboard;
 import com.github.jaceg18.chess.game.moves.Move;
 import com.github.jaceg18.chess.game.pieces.PieceType;
@@ -13,6 +15,8 @@ import java.awt.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
@@ -29,21 +33,36 @@ public class GamePanel extends JPanel {
     private int selectedSquare;
     private List<Move> legalMoves;
     private final Ai aiPlayer;
+    private final boolean aiPondering;
+    // The AI's search while it is thinking, null on the player's turn
+    private CompletableFuture<Move> aiSearch;
+    // The AI's search on the player's time, and the move it expects the player to make
+    private CompletableFuture<Move> ponderSearch;
+    private Move expectedReply;
+    private Consumer<SearchProgress> aiProgressListener;
 
     /**
      * Constructs a GamePanel with specified settings.
      *
      * @param bitboard       The bitboard representing the current game state.
      * @param isPlayerWhite  Determines if the player controls the white pieces.
+     * @param MAX_DEPTH      The deepest iteration the AI searches to.
+     * @param moveTimeMillis The AI's thinking time per move.
+     * @param aiThreads      How many threads the AI searches with.
+     * @param aiPondering    Does the AI think on the player's time?
      */
-    public GamePanel(Bitboard bitboard, boolean isPlayerWhite, int MAX_DEPTH, BoardStyle boardStyle) {
+    public GamePanel(Bitboard bitboard, boolean isPlayerWhite, int MAX_DEPTH, long moveTimeMillis, int aiThreads, boolean aiPondering, BoardStyle boardStyle) {
         this.bitboard = bitboard;
         this.isPlayerWhite = isPlayerWhite;
         this.drawer = new Drawer(bitboard, boardStyle);
         this.isDragging = false;
         this.selectedSquare = -1;
         this.legalMoves = new ArrayList<>();
-        this.aiPlayer = new Ai(bitboard, !isPlayerWhite, MAX_DEPTH);
+        this.aiPlayer = new Ai(bitboard, MAX_DEPTH);
+        this.aiPlayer.setLimits(new SearchLimits(MAX_DEPTH, moveTimeMillis, 0));
+        this.aiPlayer.setThreadCount(aiThreads);
+        this.aiPondering = aiPondering;
+        this.aiPlayer.setProgressListener(progress -> SwingUtilities.invokeLater(() -> showAiProgress(progress)));
         setPreferredSize(new Dimension(Drawer.BOARD_SIZE, Drawer.BOARD_SIZE));
         setFocusable(true);
 
@@ -75,6 +94,9 @@ public class GamePanel extends JPanel {
      * @param e The mouse event triggered on mouse press.
      */
     private void handlePieceSelection(MouseEvent e) {
+        if (isAiThinking()) {
+            return;
+        }
         int col = e.getX() / Drawer.SQUARE_SIZE;
         int row = e.getY() / Drawer.SQUARE_SIZE;
         int square = row * 8 + col;
@@ -108,7 +130,7 @@ public class GamePanel extends JPanel {
                     AudioPlayer.playSound(move.isCapture());
                     clearSelection();
                     repaint();
-                    moveAI();
+                    moveAI(move);
                 });
             } else {
                 clearSelection();
@@ -117,13 +139,107 @@ public class GamePanel extends JPanel {
     }
 
     /**
-     * Triggers the AI player to make a move and updates the GUI accordingly.
+     * Starts the AI player's search in the background. The move is played on the event dispatch thread once the
+     * search finishes, and the player can't move until then. If the AI was pondering the player's move, that search
+     * carries on instead of starting over.
+     *
+     * @param playerMove The move the player just made.
      */
-    private void moveAI() {
-        SwingUtilities.invokeLater(() -> {
-            aiPlayer.playMove();
-            repaint();
-        });
+    private void moveAI(Move playerMove) {
+        CompletableFuture<Move> search;
+        if (ponderSearch != null && playerMove.getEncoded() == expectedReply.getEncoded()) {
+            aiPlayer.ponderHit();
+            search = ponderSearch;
+            ponderSearch = null;
+        } else {
+            stopPondering();
+            search = aiPlayer.searchAsync();
+        }
+        aiSearch = search;
+        search.whenComplete((move, error) -> SwingUtilities.invokeLater(() -> finishAiMove(search, move, error)));
+    }
+
+    /**
+     * Plays the AI's move, unless the search was cancelled or failed
+     *
+     * @param search The search that finished.
+     * @param move   Its move, or null if it failed.
+     * @param error  Why it failed, or null.
+     */
+    private void finishAiMove(CompletableFuture<Move> search, Move move, Throwable error) {
+        if (search != aiSearch) {
+            return;
+        }
+        aiSearch = null;
+        // Fails when the AI has no legal moves, then the game is already over
+        if (error == null) {
+            bitboard.movePiece(move, move.isWhite());
+            AudioPlayer.playSound(move.isCapture());
+            startPondering();
+        }
+        repaint();
+    }
+
+    /**
+     * Starts the AI searching the position after the reply it expects, while the player thinks.
+     */
+    private void startPondering() {
+        expectedReply = aiPlayer.getPonderMove();
+        if (aiPondering && expectedReply != null) {
+            ponderSearch = aiPlayer.ponderAsync(expectedReply);
+        }
+    }
+
+    /**
+     * Abandons pondering, the player made a different move.
+     */
+    private void stopPondering() {
+        if (ponderSearch != null) {
+            ponderSearch.cancel(false);
+            ponderSearch = null;
+        }
+    }
+
+    /**
+     * Tells the AI to stop thinking and play the best move it has found so far.
+     */
+    public void moveNow() {
+        if (isAiThinking()) {
+            aiPlayer.stop();
+        }
+    }
+
+    /**
+     * Abandons the AI's search without playing a move, and stops any pondering.
+     */
+    public void cancelAiMove() {
+        stopPondering();
+        if (isAiThinking()) {
+            aiSearch.cancel(false);
+            aiSearch = null;
+        }
+    }
+
+    /**
+     * @return Is the AI searching for its move?
+     */
+    public boolean isAiThinking() {
+        return aiSearch != null;
+    }
+
+    /**
+     * Sets what is told about the AI's search, once per completed depth, on the event dispatch thread.
+     *
+     * @param aiProgressListener The listener, or null for none.
+     */
+    public void setAiProgressListener(Consumer<SearchProgress> aiProgressListener) {
+        this.aiProgressListener = aiProgressListener;
+    }
+
+    private void showAiProgress(SearchProgress progress) {
+        if (isAiThinking() && aiProgressListener != null) {
+            aiProgressListener.accept(progress);
+        }
     }
 
     /**
@@ -151,6 +267,15 @@ public class GamePanel extends JPanel {
         }
     }
 
+    /**
+     * Stops the AI when the panel is taken off screen, so its search doesn't keep every core busy.
+     */
+    @Override
+    public void removeNotify() {
+        cancelAiMove();
+        super.removeNotify();
+    }
+
     /**
      * Returns the drawer used for drawing the game components.
      *
@@ -0,0 +1,64 @@
+package com.github.jaceg18.chess.ui;
+
+import com.github.jaceg18.chess.engine.SearchProgress;
+import com.github.jaceg18.chess.game.moves.Move;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Shows the AI's search as it runs, with a button that makes it play straight away.
+ */
+public class SearchStatusBar extends JPanel {
+    private static final long serialVersionUID = 1L;
+
+    // How many moves of the principal variation are shown
+    private static final int MAX_PV_MOVES = 6;
+
+    private final JLabel statusLabel;
+    private final JButton moveNowButton;
+
+    /**
+     * Constructs a status bar for the AI playing on the given panel.
+     *
+     * @param gamePanel The panel whose AI this reports on.
+     */
+    public SearchStatusBar(GamePanel gamePanel) {
+        super(new BorderLayout());
+        this.statusLabel = new JLabel(" ");
+        this.moveNowButton = new JButton("Move now");
+        statusLabel.setBorder(BorderFactory.createEmptyBorder(0, 6, 0, 6));
+        moveNowButton.setFocusable(false);
+        moveNowButton.addActionListener(e -> gamePanel.moveNow());
+
+        add(statusLabel, BorderLayout.CENTER);
+        add(moveNowButton, BorderLayout.EAST);
+
+        gamePanel.setAiProgressListener(this::showProgress);
+    }
+
+    /**
+     * Shows the depth, score, node count and best line of the AI's latest completed iteration.
+     *
+     * @param progress The search's progress.
+     */
+    private void showProgress(SearchProgress progress) {
+        StringBuilder status = new StringBuilder("Depth ").append(progress.getDepth());
+        if (progress.isMate()) {
+            status.append("  mate in ").append(progress.getMateInMoves());
+        } else {
+            status.append(String.format("  %+.2f", progress.getScore() / 100.0));
+        }
+        status.append(String.format("  %,d nodes  ", progress.getNodes()));
+
+        int shown = 0;
+        for (Move move : progress.getPrincipalVariation()) {
+            if (shown++ == MAX_PV_MOVES) {
+                status.append(" ...");
+                break;
+            }
+            status.append(' ').append(move.toNotation());
+        }
+        statusLabel.setText(status.toString());
+    }
+}
@@ -2,10 +2,15 @@ package com.github.jaceg18.chess.util;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
 
 public class SettingsDialog extends JDialog {
     private JComboBox<String> boardDesignComboBox;
     private JComboBox<Integer> aiDepthComboBox;
+    private JComboBox<Integer> aiTimeComboBox;
+    private JComboBox<Integer> aiThreadsComboBox;
+    private JCheckBox aiPonderingCheckBox;
 
     public SettingsDialog(Frame owner) {
         super(owner, "Settings", true);
@@ -27,6 +32,19 @@ public class SettingsDialog extends JDialog {
         aiDepthComboBox = new JComboBox<>(new Integer[]{2, 4, 6, 8, 10, 12});
         add(aiDepthComboBox);
 
+        add(new JLabel("AI Time Per Move (s):"));
+        aiTimeComboBox = new JComboBox<>(new Integer[]{1, 2, 5, 10, 30, 60});
+        aiTimeComboBox.setSelectedItem(5);
+        add(aiTimeComboBox);
+
+        add(new JLabel("AI Threads:"));
+        aiThreadsComboBox = new JComboBox<>(threadChoices());
+        add(aiThreadsComboBox);
+
+        add(new JLabel("AI Thinks On Your Time:"));
+        aiPonderingCheckBox = new JCheckBox();
+        aiPonderingCheckBox.setSelected(true);
+        add(aiPonderingCheckBox);
 
         JButton okButton = new JButton("OK");
         okButton.addActionListener(e -> setVisible(false));
@@ -42,5 +60,30 @@ public class SettingsDialog extends JDialog {
     public int getSelectedAIDepth() {
         return (Integer) aiDepthComboBox.getSelectedItem();
     }
+
+    public long getSelectedAITimeMillis() {
+        return (Integer) aiTimeComboBox.getSelectedItem() * 1000L;
+    }
+
+    public int getSelectedAIThreads() {
+        return (Integer) aiThreadsComboBox.getSelectedItem();
+    }
+
+    public boolean isAIPonderingSelected() {
+        return aiPonderingCheckBox.isSelected();
+    }
+
+    /**
+     * Powers of two up to the number of cores, then every core
+     */
+    private static Integer[] threadChoices() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        List<Integer> choices = new ArrayList<>();
+        for (int threads = 1; threads < cores; threads *= 2) {
+            choices.add(threads);
+        }
+        choices.add(cores);
+        return choices.toArray(new Integer[0]);
+    }
 }
 